@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+package org.uweschmidt.wiimote.whiteboard.bench;
+
+import java.awt.geom.Point2D;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.uweschmidt.wiimote.whiteboard.FrameClock;
+import org.uweschmidt.wiimote.whiteboard.WiimoteDataHandler;
+import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
+import org.uweschmidt.wiimote.whiteboard.WiimoteDataHandler.WiimoteDataListener;
+import org.uweschmidt.wiimote.whiteboard.ds.IRDot;
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+import org.uweschmidt.wiimote.whiteboard.ds.Wiimote;
+import org.uweschmidt.wiimote.whiteboard.mouse.Mouse;
+import org.uweschmidt.wiimote.whiteboard.mouse.backend.NullBackend;
+import org.uweschmidt.wiimote.whiteboard.source.IRSource;
+
+/**
+ * Feeds a {@link Trace} to a {@link WiimoteDataHandler} report by report and
+ * fails (exit code 1) if its processing thread allocates any memory once it
+ * is warmed up. The reports are measured in several iterations, only the
+ * one with the fewest allocations counts: the VM itself allocates now and
+ * then while compiling, but allocations of the frame path show up in every
+ * iteration.
+ * <p>
+ * System properties: <code>bench.warmup</code>,
+ * <code>bench.iterations</code>, <code>bench.reports</code> (per
+ * iteration).
+ */
+public class AllocationCheck {
+	
+	private static final int WARMUP = Integer.getInteger("bench.warmup", 100000);
+	private static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+	private static final int REPORTS = Integer.getInteger("bench.reports", 20000);
+	// 100 reports per second and remote
+	private static final long PERIOD = 10000000L;
+	// per report, in nanoseconds
+	private static final long TIMEOUT = 1000000000L;
+	
+	private static volatile long frames = 0;
+	
+	public static void main(String[] args) throws Exception {
+		// keep the output readable
+		WiimoteWhiteboard.getLogger().setLevel(Level.WARNING);
+		if (!BenchmarkRunner.ALLOCATIONS) {
+			System.out.println("Allocated memory can't be measured on this VM.");
+			return;
+		}
+		
+		final Trace trace = new Trace(2, 1000, 7);
+		Mouse.setBackend(new NullBackend());
+		// clicks and smoothing see the timing of the trace, not of this check
+		final FrameClock.Manual clock = new FrameClock.Manual(FrameClock.now());
+		FrameClock.set(clock);
+		
+		final WiimoteDataHandler dh = new WiimoteDataHandler(WarpBenchmarks.calibration(trace), new IRSource() {
+			public void start() {
+			}
+			public void stop() {
+			}
+		});
+		dh.addWiimoteDataListener(new WiimoteDataListener() {
+			public void irWarped(Map<Wiimote, IRDot[]> data, Point2D[] warped) {
+				frames++;
+			}
+			public void irLights(Wiimote wiimote, IRDot[] lights) {
+			}
+			public void wiimoteConnected(Wiimote wiimote) {
+			}
+			public void wiimoteDisconnected(Wiimote wiimote) {
+			}
+			public void batteryLevel(Wiimote wiimote, double level) {
+			}
+		}, false);
+		final Wiimote[] wiimotes = new Wiimote[trace.getRemotes()];
+		for (int r = 0; r < wiimotes.length; r++)
+			wiimotes[r] = dh.addWiimote(trace.getWiimote(r), trace.getWiimote(r).getAddress());
+		final Thread processor = thread("IR Processing");
+		
+		final IRFrame frame = new IRFrame(trace.getRemotes());
+		final double[] x = new double[IRFrame.SLOTS], y = new double[IRFrame.SLOTS], size = new double[IRFrame.SLOTS];
+		int n = 0;
+		// no frame is processed before each remote has sent a report
+		for (int r = 0; r < wiimotes.length; r++, n++)
+			report(dh, trace, frame, wiimotes, clock, n, x, y, size);
+		Thread.sleep(100);
+		
+		for (; n < WARMUP; n++)
+			processed(report(dh, trace, frame, wiimotes, clock, n, x, y, size));
+		
+		long bytes = Long.MAX_VALUE;
+		for (int it = 0; it < ITERATIONS; it++) {
+			final long allocated = BenchmarkRunner.allocatedBytes(processor);
+			for (int end = n + REPORTS; n < end; n++)
+				processed(report(dh, trace, frame, wiimotes, clock, n, x, y, size));
+			bytes = Math.min(bytes, BenchmarkRunner.allocatedBytes(processor) - allocated);
+		}
+		
+		System.out.printf("%-45s %10s%n", "Check", "B/op");
+		System.out.printf(Locale.ENGLISH, "%-45s %10.1f%n", "WiimoteDataHandler frame path", (double) bytes / REPORTS);
+		if (bytes > 0) {
+			System.out.printf("FAILED: at least %d bytes allocated in %d reports.%n", bytes, REPORTS);
+			System.exit(1);
+		}
+	}
+	
+	// reports the n-th report of the trace (remotes take turns)
+	private static long report(WiimoteDataHandler dh, Trace trace, IRFrame frame, Wiimote[] wiimotes, FrameClock.Manual clock, int n, double[] x, double[] y, double[] size) {
+		final int r = n % wiimotes.length, f = n / wiimotes.length;
+		trace.apply(f, frame);
+		for (int i = 0; i < IRFrame.SLOTS; i++) {
+			final int d = IRFrame.index(r, i);
+			x[i] = frame.isVisible(d) ? frame.getX(d) : Double.NaN;
+			y[i] = frame.getY(d);
+			size[i] = frame.getSize(d);
+		}
+		final long before = frames;
+		clock.advance(PERIOD / wiimotes.length);
+		dh.reportIR(wiimotes[r], clock.nanoTime(), x, y, size);
+		return before;
+	}
+	
+	// waits till the processing thread has finished a frame after the given count
+	private static void processed(long before) {
+		final long deadline = System.nanoTime() + TIMEOUT;
+		while (frames == before) {
+			if (System.nanoTime() > deadline)
+				throw new IllegalStateException("Report was not processed.");
+			Thread.yield();
+		}
+	}
+	
+	private static Thread thread(String name) {
+		for (Thread t : Thread.getAllStackTraces().keySet())
+			if (name.equals(t.getName()))
+				return t;
+		throw new IllegalStateException(String.format("Thread %s not found.", name));
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.bench;
+
+/**
+ * One benchmarked operation, usually the processing of one frame of a
+ * {@link Trace}. See {@link BenchmarkRunner}.
+ */
+public abstract class Benchmark {
+	
+	private final String name;
+	// results are added up here, so they can't be optimized away
+	@SuppressWarnings("unused")
+	private long sink = 0;
+	
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public void setUp() throws Exception {
+	}
+	
+	/**
+	 * @param i
+	 *            number of the operation, counting up from 0
+	 */
+	public abstract void run(int i);
+	
+	public void tearDown() throws Exception {
+	}
+	
+	protected void consume(double d) {
+		sink += Double.doubleToRawLongBits(d);
+	}
+	
+	protected void consume(Object o) {
+		sink += o != null ? System.identityHashCode(o) : 1;
+	}
+
+}
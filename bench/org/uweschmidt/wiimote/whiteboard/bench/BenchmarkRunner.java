@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+
+import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
+
+/**
+ * Runs all benchmarks (or the ones whose names match the regular expressions
+ * given as arguments) and prints the time and allocated memory per
+ * operation.
+ * <p>
+ * System properties: <code>bench.warmup</code> (ms, per benchmark),
+ * <code>bench.iterations</code>, <code>bench.time</code> (ms, per
+ * iteration).
+ */
+public class BenchmarkRunner {
+	
+	private static final long WARMUP = Long.getLong("bench.warmup", 1000);
+	private static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+	private static final long TIME = Long.getLong("bench.time", 1000);
+	// operations between two clock checks
+	private static final int BATCH = 256;
+	
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	// HotSpot only
+	static final boolean ALLOCATIONS = THREADS instanceof com.sun.management.ThreadMXBean;
+	
+	public static void main(String[] args) throws Exception {
+		// keep the output readable
+		WiimoteWhiteboard.getLogger().setLevel(Level.WARNING);
+		
+		final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		IRDotBenchmarks.register(benchmarks);
+		WarpBenchmarks.register(benchmarks);
+		ClusterBenchmarks.register(benchmarks);
+		SmoothingBenchmarks.register(benchmarks);
+		ControlBenchmarks.register(benchmarks);
+		TuioBenchmarks.register(benchmarks);
+		
+		System.out.printf("%-45s %12s %10s %10s%n", "Benchmark", "ns/op", "error", "B/op");
+		for (Benchmark b : benchmarks) {
+			if (matches(b.getName(), args))
+				run(b);
+		}
+	}
+	
+	private static boolean matches(String name, String[] patterns) {
+		if (patterns.length == 0) return true;
+		for (String p : patterns)
+			if (name.matches(p)) return true;
+		return false;
+	}
+	
+	private static void run(Benchmark b) throws Exception {
+		b.setUp();
+		int i = 0;
+		
+		// warmup
+		long end = System.nanoTime() + WARMUP * 1000000L;
+		while (System.nanoTime() < end) {
+			for (int k = 0; k < BATCH; k++)
+				b.run(i++);
+		}
+		
+		final double[] results = new double[ITERATIONS];
+		long ops = 0, bytes = 0;
+		for (int it = 0; it < ITERATIONS; it++) {
+			final long allocated = allocatedBytes();
+			final long start = System.nanoTime();
+			end = start + TIME * 1000000L;
+			long n = 0, now;
+			do {
+				for (int k = 0; k < BATCH; k++)
+					b.run(i++);
+				n += BATCH;
+			} while ((now = System.nanoTime()) < end);
+			results[it] = (double) (now - start) / n;
+			bytes += allocatedBytes() - allocated;
+			ops += n;
+		}
+		b.tearDown();
+		
+		double mean = 0, var = 0;
+		for (double r : results)
+			mean += r / ITERATIONS;
+		for (double r : results)
+			var += (r - mean) * (r - mean) / Math.max(1, ITERATIONS - 1);
+		System.out.printf(Locale.ENGLISH, "%-45s %12.1f %10.1f %10s%n", b.getName(), mean, Math.sqrt(var), !ALLOCATIONS ? "n/a" : String.format(Locale.ENGLISH, "%.1f", (double) bytes / ops));
+	}
+	
+	private static long allocatedBytes() {
+		return allocatedBytes(Thread.currentThread());
+	}
+	
+	static long allocatedBytes(Thread t) {
+		return ALLOCATIONS ? ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(t.getId()) : 0;
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.bench;
+
+import java.util.List;
+
+import org.uweschmidt.wiimote.whiteboard.PointTracker;
+import org.uweschmidt.wiimote.whiteboard.calibration.PointClusterer;
+import org.uweschmidt.wiimote.whiteboard.calibration.WiimoteCalibration;
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+
+/**
+ * Clustering of warped dots.
+ */
+public class ClusterBenchmarks {
+	
+	public static void register(List<Benchmark> benchmarks) {
+		for (final int remotes : new int[] { 1, 2, 4, 8 }) {
+			final Trace trace = new Trace(remotes, 1000, 4);
+			
+			benchmarks.add(new Benchmark(String.format("PointClusterer.cluster (%d remotes)", remotes)) {
+				private final IRFrame frame = new IRFrame(remotes);
+				private final PointClusterer clusterer = new PointClusterer(remotes);
+				// warped dots of all frames
+				private final double[][] wx = new double[trace.getFrames()][remotes * IRFrame.SLOTS], wy = new double[trace.getFrames()][remotes * IRFrame.SLOTS];
+				private final boolean[][] warped = new boolean[trace.getFrames()][remotes * IRFrame.SLOTS];
+				@Override
+				public void setUp() throws Exception {
+					final WiimoteCalibration calibration = WarpBenchmarks.calibration(trace);
+					trace.init(frame);
+					for (int f = 0; f < trace.getFrames(); f++) {
+						trace.apply(f, frame);
+						calibration.warp(frame);
+						for (int d = 0; d < remotes * IRFrame.SLOTS; d++) {
+							wx[f][d] = frame.getWarpedX(d);
+							wy[f][d] = frame.getWarpedY(d);
+							warped[f][d] = frame.isWarped(d);
+						}
+					}
+				}
+				@Override
+				public void run(int i) {
+					final int f = i % trace.getFrames();
+					for (int d = 0; d < remotes * IRFrame.SLOTS; d++) {
+						if (warped[f][d])
+							frame.setWarped(d, wx[f][d], wy[f][d]);
+						else
+							frame.clearWarped(d);
+					}
+					clusterer.cluster(frame);
+					consume(frame.getClusterCount());
+				}
+			});
+		}
+		
+		final Trace trace = new Trace(1, 1000, 4);
+		benchmarks.add(new Benchmark("PointTracker.track") {
+			private final IRFrame frame = new IRFrame(1);
+			private final PointTracker tracker = new PointTracker();
+			// clustered points of all frames
+			private final int[] count = new int[trace.getFrames()];
+			private final double[][] px = new double[trace.getFrames()][IRFrame.SLOTS], py = new double[trace.getFrames()][IRFrame.SLOTS];
+			@Override
+			public void setUp() throws Exception {
+				final WiimoteCalibration calibration = WarpBenchmarks.calibration(trace);
+				trace.init(frame);
+				for (int f = 0; f < trace.getFrames(); f++) {
+					trace.apply(f, frame);
+					calibration.warp(frame);
+					count[f] = frame.getClusterCount();
+					for (int c = 0; c < count[f]; c++) {
+						px[f][c] = frame.getPointX(c);
+						py[f][c] = frame.getPointY(c);
+					}
+				}
+			}
+			@Override
+			public void run(int i) {
+				final int f = i % trace.getFrames();
+				frame.clearClusters();
+				for (int c = 0; c < count[f]; c++)
+					frame.setPoint(frame.addCluster(), px[f][c], py[f][c]);
+				tracker.track(frame);
+				consume(tracker.getId(0));
+			}
+		});
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.bench;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.List;
+
+import org.uweschmidt.wiimote.whiteboard.FrameClock;
+import org.uweschmidt.wiimote.whiteboard.mouse.CursorControlStrategy;
+import org.uweschmidt.wiimote.whiteboard.mouse.DefaultControlStrategy;
+import org.uweschmidt.wiimote.whiteboard.mouse.Mouse;
+import org.uweschmidt.wiimote.whiteboard.mouse.TouchpadControlStrategy;
+import org.uweschmidt.wiimote.whiteboard.mouse.backend.NullBackend;
+
+/**
+ * All cursor control strategies, without actually injecting events. The
+ * frames are timed by a manual clock, so delayed presses and releases are
+ * due at the same frames in every run.
+ */
+public class ControlBenchmarks {
+	
+	// 100 reports per second
+	private static final long PERIOD = 10000000L;
+	
+	public static void register(List<Benchmark> benchmarks) {
+		final Trace trace = new Trace(1, 1000, 6);
+		final List<Class<? extends CursorControlStrategy>> strategies = Arrays.<Class<? extends CursorControlStrategy>>asList(DefaultControlStrategy.class, TouchpadControlStrategy.class);
+		
+		for (final Class<? extends CursorControlStrategy> c : strategies) {
+			benchmarks.add(new Benchmark(c.getSimpleName() + ".process") {
+				private final Point2D p = new Point2D.Double();
+				private CursorControlStrategy ccs;
+				private FrameClock previous;
+				private FrameClock.Manual clock;
+				private long start;
+				@Override
+				public void setUp() throws Exception {
+					Mouse.setBackend(new NullBackend());
+					ccs = c.getDeclaredConstructor().newInstance();
+					previous = FrameClock.get();
+					start = previous.nanoTime();
+					clock = new FrameClock.Manual(start);
+					FrameClock.set(clock);
+				}
+				@Override
+				public void run(int i) {
+					// due timeouts are run by the timer thread once the clock has passed them
+					clock.set(start + i * PERIOD);
+					// like WiimoteDataHandler, the strategies' timers share this lock
+					synchronized (Mouse.class) {
+						FrameClock.beginFrame(clock.nanoTime());
+						if (trace.isDown(i, 0)) {
+							p.setLocation(trace.getX(i, 0), trace.getY(i, 0));
+							ccs.process(p);
+						} else {
+							ccs.process(null);
+						}
+						Mouse.flush();
+					}
+				}
+				@Override
+				public void tearDown() throws Exception {
+					synchronized (Mouse.class) {
+						ccs.reset();
+						Mouse.LEFT_BUTTON.setPressed(false);
+						Mouse.RIGHT_BUTTON.setPressed(false);
+						Mouse.flush();
+					}
+					FrameClock.set(previous);
+				}
+			});
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+package org.uweschmidt.wiimote.whiteboard.bench;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.uweschmidt.wiimote.whiteboard.mouse.Mouse;
+import org.uweschmidt.wiimote.whiteboard.mouse.backend.EvdevBackend;
+
+/**
+ * Lets the {@link EvdevBackend} write to a temporary file instead of an event
+ * device and decodes the written <code>struct input_event</code>s, fails
+ * (exit code 1) if they don't match what the kernel expects.
+ */
+public class EvdevCheck {
+	
+	// linux/input.h, input-event-codes.h
+	private static final int EV_SYN = 0x00, EV_KEY = 0x01, EV_ABS = 0x03;
+	private static final int SYN_REPORT = 0, ABS_X = 0x00, ABS_Y = 0x01;
+	private static final int BTN_LEFT = 0x110, BTN_RIGHT = 0x111;
+	// struct timeval is two longs (amd64, aarch64, ...)
+	private static final int TIMEVAL = System.getProperty("os.arch").contains("64") ? 16 : 8;
+	
+	private static final List<String> errors = new ArrayList<String>();
+	
+	public static void main(String[] args) throws Exception {
+		final File f = File.createTempFile("evdev", ".bin");
+		f.deleteOnExit();
+		
+		final Rectangle desktop = new Rectangle(-1280, 0, 3200, 1080);
+		final EvdevBackend backend = new EvdevBackend(f, desktop);
+		backend.move(-1280, 0);
+		backend.move(1919, 1079);
+		backend.move(319.5, 539.5);
+		backend.press(Mouse.LEFT_BUTTON);
+		backend.release(Mouse.LEFT_BUTTON);
+		backend.press(Mouse.RIGHT_BUTTON);
+		backend.release(Mouse.RIGHT_BUTTON);
+		
+		final int[][] expected = {
+			{ EV_ABS, ABS_X, 0, EV_ABS, ABS_Y, 0 },
+			{ EV_ABS, ABS_X, EvdevBackend.ABS_MAX, EV_ABS, ABS_Y, EvdevBackend.ABS_MAX },
+			// centre, rounded up
+			{ EV_ABS, ABS_X, 16384, EV_ABS, ABS_Y, 16384 },
+			{ EV_KEY, BTN_LEFT, 1 },
+			{ EV_KEY, BTN_LEFT, 0 },
+			{ EV_KEY, BTN_RIGHT, 1 },
+			{ EV_KEY, BTN_RIGHT, 0 },
+		};
+		
+		check(EvdevBackend.EVENT_SIZE == TIMEVAL + 8, "event size %d, expected %d", EvdevBackend.EVENT_SIZE, TIMEVAL + 8);
+		final RandomAccessFile file = new RandomAccessFile(f, "r");
+		final ByteBuffer buf = ByteBuffer.allocate((int) file.length()).order(ByteOrder.nativeOrder());
+		file.getChannel().read(buf);
+		file.close();
+		buf.flip();
+		check(buf.limit() % (TIMEVAL + 8) == 0, "%d bytes written, not a multiple of the event size", buf.limit());
+		
+		// each write is one report: events terminated by EV_SYN/SYN_REPORT
+		final List<int[]> reports = new ArrayList<int[]>();
+		final int[] report = new int[3 * 8];
+		int n = 0;
+		while (buf.remaining() >= TIMEVAL + 8) {
+			for (int i = 0; i < TIMEVAL; i++)
+				check(buf.get() == 0, "time of an event of report %d not zero", reports.size());
+			final int type = buf.getShort() & 0xffff, code = buf.getShort() & 0xffff, value = buf.getInt();
+			if (type == EV_SYN) {
+				check(code == SYN_REPORT && value == 0, "EV_SYN with code %d, value %d", code, value);
+				reports.add(Arrays.copyOf(report, n));
+				n = 0;
+			} else if (n < report.length) {
+				report[n++] = type;
+				report[n++] = code;
+				report[n++] = value;
+			}
+		}
+		check(n == 0, "last report not terminated by EV_SYN");
+		
+		check(reports.size() == expected.length, "%d reports, expected %d", reports.size(), expected.length);
+		for (int r = 0; r < Math.min(reports.size(), expected.length); r++)
+			check(Arrays.equals(reports.get(r), expected[r]), "report %d is %s, expected %s", r, Arrays.toString(reports.get(r)), Arrays.toString(expected[r]));
+		
+		if (errors.isEmpty()) {
+			System.out.printf("%s: %d reports of %d-byte events OK%n", EvdevBackend.class.getSimpleName(), reports.size(), TIMEVAL + 8);
+		} else {
+			for (String e : errors)
+				System.out.println("FAILED: " + e);
+			System.exit(1);
+		}
+	}
+	
+	private static void check(boolean ok, String message, Object... args) {
+		if (!ok)
+			errors.add(String.format(message, args));
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.bench;
+
+import java.util.List;
+
+import org.uweschmidt.wiimote.whiteboard.ds.IRDot;
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+
+/**
+ * Conversion of the Wiimote's IR lights to dots.
+ */
+public class IRDotBenchmarks {
+	
+	public static void register(List<Benchmark> benchmarks) {
+		final Trace trace = new Trace(1, 1000, 1);
+		
+		benchmarks.add(new Benchmark("IRDot.getIRDots") {
+			@Override
+			public void run(int i) {
+				consume(IRDot.getIRDots(trace.getLights(i, 0)));
+			}
+		});
+		
+		benchmarks.add(new Benchmark("IRFrame.setLights") {
+			private final IRFrame frame = new IRFrame(1);
+			@Override
+			public void run(int i) {
+				frame.setLights(0, trace.getLights(i, 0));
+				consume(frame.getLights(0));
+			}
+		});
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.bench;
+
+import java.awt.geom.Point2D;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.uweschmidt.wiimote.whiteboard.FrameClock;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.MouseSmoothingStrategy;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.SimpleMovingAverage;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.TriangularMovingAverage;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.WeightedMovingAverage;
+import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
+
+/**
+ * All mouse smoothing strategies, and the moving averages with the largest
+ * window.
+ */
+public class SmoothingBenchmarks {
+	
+	// 100 reports per second
+	private static final long PERIOD = 10000000L;
+	
+	public static void register(List<Benchmark> benchmarks) {
+		final Trace trace = new Trace(1, 1000, 5);
+		
+		// registered by the preferences
+		WWPreferences.getPreferences();
+		final Set<Class<? extends MouseSmoothingStrategy>> strategies = new LinkedHashSet<Class<? extends MouseSmoothingStrategy>>(MouseSmoothingStrategy.REGISTERED.values());
+		
+		for (final Class<? extends MouseSmoothingStrategy> c : strategies) {
+			benchmarks.add(new SmoothingBenchmark(c.getSimpleName() + ".translate", trace) {
+				@Override
+				protected MouseSmoothingStrategy create() throws Exception {
+					return c.getDeclaredConstructor().newInstance();
+				}
+			});
+		}
+		
+		final int n = WWPreferences.MAX_SMOOTHING_WINDOW;
+		benchmarks.add(new SmoothingBenchmark("SimpleMovingAverage.translate" + n, trace) {
+			@Override
+			protected MouseSmoothingStrategy create() {
+				return new SimpleMovingAverage(n);
+			}
+		});
+		benchmarks.add(new SmoothingBenchmark("WeightedMovingAverage.translate" + n, trace) {
+			@Override
+			protected MouseSmoothingStrategy create() {
+				return new WeightedMovingAverage(n);
+			}
+		});
+		benchmarks.add(new SmoothingBenchmark("TriangularMovingAverage.translate" + n, trace) {
+			@Override
+			protected MouseSmoothingStrategy create() {
+				return new TriangularMovingAverage(n);
+			}
+		});
+	}
+	
+	private static abstract class SmoothingBenchmark extends Benchmark {
+		
+		private final Trace trace;
+		private final Point2D p = new Point2D.Double();
+		private MouseSmoothingStrategy mss;
+		
+		public SmoothingBenchmark(String name, Trace trace) {
+			super(name);
+			this.trace = trace;
+		}
+		
+		protected abstract MouseSmoothingStrategy create() throws Exception;
+		
+		@Override
+		public void setUp() throws Exception {
+			mss = create();
+		}
+		
+		@Override
+		public void run(int i) {
+			FrameClock.beginFrame(i * PERIOD);
+			if (trace.isDown(i, 0)) {
+				p.setLocation(trace.getX(i, 0), trace.getY(i, 0));
+				consume(mss.translate(p));
+			} else {
+				mss.reset();
+			}
+		}
+	}
+
+}
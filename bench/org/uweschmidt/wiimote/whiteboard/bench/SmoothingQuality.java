@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.bench;
+
+import java.awt.geom.Point2D;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
+import org.uweschmidt.wiimote.whiteboard.calibration.WiimoteCalibration;
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.KalmanSmoothing;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.MouseSmoothingStrategy;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.OneEuroSmoothing;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.PredictiveSmoothing;
+import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
+
+/**
+ * Replays a synthetic trace through warping and each mouse smoothing
+ * strategy and prints how far the cursor lags behind the pen and how much it
+ * jitters around it.
+ * <p>
+ * The lag is the time shift of the pen positions that fits the cursor
+ * positions best, the jitter is the RMS distance that remains at that shift.
+ * System property: <code>bench.prediction</code> (ms, for the predictive
+ * strategies).
+ */
+public class SmoothingQuality {
+	
+	// 100 reports per second
+	private static final long PERIOD = 10000000L;
+	// ignore the start of each stroke, while the filters settle
+	private static final int SETTLE = 10;
+	private static final int MAX_LAG = 150, MIN_LAG = -50;
+	
+	public static void main(String[] args) throws Exception {
+		WiimoteWhiteboard.getLogger().setLevel(Level.WARNING);
+		final double prediction = Integer.getInteger("bench.prediction", 30) / 1000d;
+		
+		WWPreferences.getPreferences();
+		final Map<String, MouseSmoothingStrategy> strategies = new LinkedHashMap<String, MouseSmoothingStrategy>();
+		for (Map.Entry<String, Class<? extends MouseSmoothingStrategy>> e : MouseSmoothingStrategy.REGISTERED.entrySet())
+			strategies.put(e.getKey(), e.getValue().getDeclaredConstructor().newInstance());
+		strategies.put(String.format(Locale.ENGLISH, "%s (%.0fms ahead)", KalmanSmoothing.NAME, prediction * 1000), new KalmanSmoothing(prediction));
+		strategies.put(String.format(Locale.ENGLISH, "%s (%.0fms ahead)", OneEuroSmoothing.NAME, prediction * 1000), new OneEuroSmoothing(prediction));
+		
+		final Trace trace = new Trace(1, 6000, 6);
+		final WiimoteCalibration calibration = WarpBenchmarks.calibration(trace);
+		final IRFrame frame = new IRFrame(1);
+		trace.init(frame);
+		
+		System.out.println(String.format("%-40s %10s %10s", "Smoothing", "lag [ms]", "jitter [px]"));
+		final Point2D p = new Point2D.Double();
+		for (Map.Entry<String, MouseSmoothingStrategy> e : strategies.entrySet()) {
+			final MouseSmoothingStrategy mss = e.getValue();
+			final double[] x = new double[trace.getFrames()], y = new double[trace.getFrames()];
+			int stroke = 0;
+			for (int f = 0; f < trace.getFrames(); f++) {
+				trace.apply(f, frame);
+				calibration.warp(frame);
+				x[f] = Double.NaN;
+				// only one pen, so that the first cluster is always this pen
+				if (frame.getClusterCount() == 0 || !trace.isDown(f, 0) || trace.isDown(f, 1)) {
+					mss.reset();
+					stroke = 0;
+					continue;
+				}
+				p.setLocation(frame.getPointX(0), frame.getPointY(0));
+				final Point2D s = mss instanceof PredictiveSmoothing ? ((PredictiveSmoothing) mss).translate(p, f * PERIOD) : mss.translate(p);
+				if (stroke++ < SETTLE) continue;
+				x[f] = s.getX();
+				y[f] = s.getY();
+			}
+			
+			int lag = 0;
+			double min = Double.POSITIVE_INFINITY;
+			for (int ms = MIN_LAG; ms <= MAX_LAG; ms++) {
+				final double err = error(trace, x, y, ms);
+				if (err < min) {
+					min = err;
+					lag = ms;
+				}
+			}
+			System.out.println(String.format(Locale.ENGLISH, "%-40s %10d %10.2f", e.getKey(), lag, Math.sqrt(min)));
+		}
+	}
+	
+	// mean squared distance of the cursor to the pen ms milliseconds earlier
+	private static double error(Trace trace, double[] x, double[] y, int ms) {
+		double sum = 0;
+		int n = 0;
+		for (int f = 0; f < x.length; f++) {
+			if (Double.isNaN(x[f])) continue;
+			// pen position by linear interpolation
+			final double t = f - ms * 1e6 / PERIOD;
+			final int f0 = (int) Math.floor(t);
+			final double k = t - f0;
+			if (f0 < 0 || f0 + 1 >= x.length || !trace.isDown(f0, 0) || !trace.isDown(f0 + 1, 0) || trace.isDown(f0, 1)) continue;
+			final double px = trace.getX(f0, 0) + k * (trace.getX(f0 + 1, 0) - trace.getX(f0, 0));
+			final double py = trace.getY(f0, 0) + k * (trace.getY(f0 + 1, 0) - trace.getY(f0, 0));
+			sum += (x[f] - px) * (x[f] - px) + (y[f] - py) * (y[f] - py);
+			n++;
+		}
+		return n > 0 ? sum / n : Double.POSITIVE_INFINITY;
+	}
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.bench;
+
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.media.jai.PerspectiveTransform;
+
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+import org.uweschmidt.wiimote.whiteboard.ds.Wiimote;
+
+import wiiremotej.IRLight;
+
+/**
+ * Synthetic IR data of pens on the screen as seen by a number of calibrated
+ * Wiimotes: strokes along a Lissajous curve with sensor jitter, a second pen
+ * now and then and short dropouts of single Wiimotes. All frames are
+ * computed in advance.
+ */
+public class Trace {
+	
+	public static final Rectangle SCREEN = new Rectangle(0, 0, 1920, 1080);
+	public static final int PENS = 2;
+	
+	private static final int SLOTS = IRFrame.SLOTS;
+	private static final double JITTER = .0015;
+	private static final double DROPOUTS = .02;
+	
+	private final int remotes, frames;
+	private final Wiimote[] wiimotes;
+	// camera corners of each remote, screen corners are the ones of SCREEN
+	private final double[][] corners;
+	
+	// [frame][remote * SLOTS + slot]
+	private final double[][] x, y, size;
+	private final boolean[][] visible;
+	private final IRLight[][][] lights;
+	// [frame][pen], NaN if not on the screen
+	private final double[][] penX, penY;
+
+	public Trace(int remotes, int frames, long seed) {
+		this.remotes = remotes;
+		this.frames = frames;
+		final Random random = new Random(seed);
+		
+		wiimotes = new Wiimote[remotes];
+		corners = new double[remotes][];
+		final PerspectiveTransform[] toCamera = new PerspectiveTransform[remotes];
+		for (int r = 0; r < remotes; r++) {
+			wiimotes[r] = new Wiimote(null, String.format("00000000000%d", r+1), r+1);
+			final double o = .03 * r;
+			corners[r] = new double[] { .1+o, .1, .9, .12+o, .88-o, .9, .12, .88-o };
+			final double[] c = corners[r];
+			toCamera[r] = PerspectiveTransform.getQuadToQuad(
+					SCREEN.x, SCREEN.y, SCREEN.x+SCREEN.width, SCREEN.y, SCREEN.x+SCREEN.width, SCREEN.y+SCREEN.height, SCREEN.x, SCREEN.y+SCREEN.height,
+					c[0], c[1], c[2], c[3], c[4], c[5], c[6], c[7]);
+		}
+		
+		x = new double[frames][remotes * SLOTS];
+		y = new double[frames][remotes * SLOTS];
+		size = new double[frames][remotes * SLOTS];
+		visible = new boolean[frames][remotes * SLOTS];
+		lights = new IRLight[frames][remotes][SLOTS];
+		penX = new double[frames][PENS];
+		penY = new double[frames][PENS];
+		
+		final Point2D.Double p = new Point2D.Double();
+		for (int f = 0; f < frames; f++) {
+			final double t = f / 100.0;
+			for (int pen = 0; pen < PENS; pen++) {
+				// strokes of 0.8s with pauses of 0.2s, second pen only every third second 
+				final boolean down = f % 100 < 80 && (pen == 0 || f / 100 % 3 == 2);
+				penX[f][pen] = down ? SCREEN.getCenterX() + .4 * SCREEN.width * Math.sin(2 * Math.PI * (.3 + .1 * pen) * t) : Double.NaN;
+				penY[f][pen] = down ? SCREEN.getCenterY() + .4 * SCREEN.height * Math.sin(2 * Math.PI * (.4 - .1 * pen) * t + pen) : Double.NaN;
+				
+				for (int r = 0; r < remotes; r++) {
+					final int d = IRFrame.index(r, pen);
+					if (!down || random.nextDouble() < DROPOUTS) continue;
+					toCamera[r].transform(new Point2D.Double(penX[f][pen], penY[f][pen]), p);
+					x[f][d] = clamp(p.x + JITTER * random.nextGaussian());
+					y[f][d] = clamp(p.y + JITTER * random.nextGaussian());
+					size[f][d] = (2 + random.nextInt(3)) / 15.0;
+					visible[f][d] = true;
+					lights[f][r][pen] = new IRLight((int) Math.round(x[f][d] * 1023), (int) Math.round(y[f][d] * 767), (int) Math.round(size[f][d] * 15));
+				}
+			}
+		}
+	}
+	
+	private static double clamp(double v) {
+		return Math.max(0, Math.min(1, v));
+	}
+	
+	public int getRemotes() {
+		return remotes;
+	}
+	
+	public int getFrames() {
+		return frames;
+	}
+	
+	public Wiimote getWiimote(int r) {
+		return wiimotes[r];
+	}
+	
+	/**
+	 * @return calibration of all remotes in the file format of
+	 *         WiimoteCalibration
+	 */
+	public String getCalibration() {
+		final StringBuilder sb = new StringBuilder();
+		final double[] screen = { SCREEN.x, SCREEN.y, SCREEN.x+SCREEN.width, SCREEN.y, SCREEN.x+SCREEN.width, SCREEN.y+SCREEN.height, SCREEN.x, SCREEN.y+SCREEN.height };
+		for (int r = 0; r < remotes; r++) {
+			sb.append(wiimotes[r].getAddress());
+			for (int i = 0; i < 4; i++)
+				sb.append(String.format(Locale.ENGLISH, "\n%f %f %.0f %.0f", corners[r][i*2], corners[r][i*2+1], screen[i*2], screen[i*2+1]));
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Sets up the given frame for the remotes of this trace.
+	 */
+	public void init(IRFrame frame) {
+		for (int r = 0; r < remotes; r++) {
+			frame.setWiimote(r, wiimotes[r]);
+			frame.setActive(r, true);
+		}
+	}
+	
+	/**
+	 * Writes the raw dots of the given frame number to the given frame.
+	 */
+	public void apply(int f, IRFrame frame) {
+		f %= frames;
+		for (int d = 0; d < remotes * SLOTS; d++) {
+			if (visible[f][d])
+				frame.setDot(d, x[f][d], y[f][d], size[f][d]);
+			else
+				frame.clearDot(d);
+		}
+	}
+	
+	public IRLight[] getLights(int f, int r) {
+		return lights[f % frames][r];
+	}
+	
+	public boolean isDown(int f, int pen) {
+		return !Double.isNaN(penX[f % frames][pen]);
+	}
+	
+	public double getX(int f, int pen) {
+		return penX[f % frames][pen];
+	}
+	
+	public double getY(int f, int pen) {
+		return penY[f % frames][pen];
+	}
+
+}
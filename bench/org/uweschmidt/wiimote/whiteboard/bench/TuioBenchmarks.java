@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.bench;
+
+import java.awt.geom.Point2D;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.uweschmidt.wiimote.whiteboard.tuio.TuioTransmitter;
+
+/**
+ * TUIO transmission to a socket on the loopback interface (which is not
+ * read, packets are dropped by the operating system when its buffer is full),
+ * with the built-in encoder and with NetUtil. The fan-out variant additionally
+ * sends to three more UDP sockets and a TCP client that doesn't read either.
+ * The TUIO 2.0 variant sends pointers and bounds instead of 2Dcur messages.
+ */
+public class TuioBenchmarks {
+	
+	public static void register(List<Benchmark> benchmarks) {
+		final Trace trace = new Trace(1, 1000, 7);
+		
+		benchmarks.add(new TuioBenchmark("TuioTransmitter.irWarped", trace, false));
+		benchmarks.add(new TuioBenchmark("TuioTransmitter.irWarpedNetUtil", trace, true));
+		benchmarks.add(new TuioBenchmark("TuioTransmitter.irWarpedFanOut", trace, false, 3));
+		benchmarks.add(new TuioBenchmark("TuioTransmitter.irWarpedTuio2", trace, false, 0, 2));
+	}
+	
+	private static class TuioBenchmark extends Benchmark {
+		
+		private final Trace trace;
+		private final boolean netUtil;
+		private final int targets;
+		private final int version;
+		private final Point2D[] points = new Point2D[4];
+		private final Point2D[] pens = { new Point2D.Double(), new Point2D.Double() };
+		private DatagramSocket[] receivers;
+		private Socket client;
+		private TuioTransmitter transmitter;
+		
+		public TuioBenchmark(String name, Trace trace, boolean netUtil) {
+			this(name, trace, netUtil, 0);
+		}
+		
+		/**
+		 * @param targets
+		 *            number of additional UDP targets, a TCP client is
+		 *            connected as well if greater than 0
+		 */
+		public TuioBenchmark(String name, Trace trace, boolean netUtil, int targets) {
+			this(name, trace, netUtil, targets, 1);
+		}
+		
+		public TuioBenchmark(String name, Trace trace, boolean netUtil, int targets, int version) {
+			super(name);
+			this.trace = trace;
+			this.netUtil = netUtil;
+			this.targets = targets;
+			this.version = version;
+		}
+		
+		@Override
+		public void setUp() throws Exception {
+			receivers = new DatagramSocket[targets + 1];
+			final List<String> addresses = new ArrayList<String>();
+			for (int i = 0; i < receivers.length; i++) {
+				receivers[i] = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+				if (i > 0)
+					addresses.add("127.0.0.1:" + receivers[i].getLocalPort());
+			}
+			if (targets > 0) {
+				final ServerSocket free = new ServerSocket(0);
+				final int port = free.getLocalPort();
+				free.close();
+				transmitter = new TuioTransmitter(Trace.SCREEN, "127.0.0.1", receivers[0].getLocalPort(), netUtil, addresses, port, 0);
+				client = new Socket("127.0.0.1", port);
+				// until the server has accepted the client
+				Thread.sleep(100);
+			} else {
+				transmitter = new TuioTransmitter(Trace.SCREEN, "127.0.0.1", receivers[0].getLocalPort(), netUtil);
+			}
+			transmitter.setVersion(version);
+			// every frame is sent
+			transmitter.setKeepAlive(0);
+		}
+		
+		@Override
+		public void run(int i) {
+			for (int pen = 0; pen < Trace.PENS; pen++) {
+				if (trace.isDown(i, pen)) {
+					pens[pen].setLocation(trace.getX(i, pen), trace.getY(i, pen));
+					points[pen] = pens[pen];
+				} else {
+					points[pen] = null;
+				}
+			}
+			transmitter.irWarped(null, points);
+		}
+		
+		@Override
+		public void tearDown() throws Exception {
+			transmitter.dispose();
+			if (client != null)
+				client.close();
+			for (DatagramSocket receiver : receivers)
+				receiver.close();
+		}
+	}
+
+}
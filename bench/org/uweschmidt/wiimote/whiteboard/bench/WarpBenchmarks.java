@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.bench;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import javax.media.jai.PerspectiveTransform;
+
+import org.uweschmidt.wiimote.whiteboard.calibration.Homography;
+import org.uweschmidt.wiimote.whiteboard.calibration.WiimoteCalibration;
+import org.uweschmidt.wiimote.whiteboard.ds.IRDot;
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+
+/**
+ * Warping of raw dots to screen coordinates.
+ */
+public class WarpBenchmarks {
+	
+	public static void register(List<Benchmark> benchmarks) {
+		for (final int remotes : new int[] { 1, 2 }) {
+			final Trace trace = new Trace(remotes, 1000, 2);
+			
+			benchmarks.add(new Benchmark(String.format("Trace.apply (%d remotes)", remotes)) {
+				private final IRFrame frame = new IRFrame(remotes);
+				@Override
+				public void run(int i) {
+					trace.apply(i, frame);
+					consume(frame.getX(0));
+				}
+			});
+			
+			benchmarks.add(new Benchmark(String.format("WiimoteCalibration.warp (%d remotes)", remotes)) {
+				private final IRFrame frame = new IRFrame(remotes);
+				private WiimoteCalibration calibration;
+				@Override
+				public void setUp() throws Exception {
+					calibration = calibration(trace);
+					trace.init(frame);
+				}
+				@Override
+				public void run(int i) {
+					trace.apply(i, frame);
+					calibration.warp(frame);
+					consume(frame.getClusterCount() > 0 ? frame.getPointX(0) : 0);
+				}
+			});
+		}
+		
+		// 4 slots of one remote, old and new path
+		final Trace trace = new Trace(1, 1000, 3);
+		
+		benchmarks.add(new Benchmark("PerspectiveTransform.transform (4 dots)") {
+			private final IRFrame frame = new IRFrame(1);
+			private PerspectiveTransform transform;
+			@Override
+			public void setUp() throws Exception {
+				transform = calibration(trace).getTransformer().get(trace.getWiimote(0).getAddress());
+			}
+			@Override
+			public void run(int i) {
+				trace.apply(i, frame);
+				final IRDot[] dots = frame.getLights(0);
+				for (int k = 0; k < IRFrame.SLOTS; k++)
+					if (dots[k] != null)
+						consume(transform.transform(dots[k], new IRDot(dots[k])));
+			}
+		});
+		
+		benchmarks.add(new Benchmark("Homography.transform (4 dots)") {
+			private final IRFrame frame = new IRFrame(1);
+			private final double[] x = new double[IRFrame.SLOTS], y = new double[IRFrame.SLOTS];
+			private Homography h;
+			@Override
+			public void setUp() throws Exception {
+				h = new Homography(calibration(trace).getTransformer().get(trace.getWiimote(0).getAddress()));
+			}
+			@Override
+			public void run(int i) {
+				trace.apply(i, frame);
+				for (int k = 0; k < IRFrame.SLOTS; k++) {
+					x[k] = frame.getX(k);
+					y[k] = frame.getY(k);
+				}
+				h.transform(x, y, x, y, IRFrame.SLOTS);
+				consume(x[0]);
+			}
+		});
+	}
+	
+	static WiimoteCalibration calibration(Trace trace) throws Exception {
+		final WiimoteCalibration calibration = new WiimoteCalibration();
+		if (!calibration.load(new ByteArrayInputStream(trace.getCalibration().getBytes("UTF-8"))))
+			throw new IllegalStateException("Calibration of trace could not be loaded.");
+		return calibration;
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Monotonic clock (in nanoseconds) the IR reports are stamped with, and the
+ * time of the frame that is being processed, which all timing decisions of
+ * the cursor control are based on instead of the wall clock.
+ * <p>
+ * The frame time is set by the tracking thread for each frame and by the
+ * mouse timer for its delayed events, both holding the lock of
+ * {@link org.uweschmidt.wiimote.whiteboard.mouse.Mouse}.
+ */
+public abstract class FrameClock {
+	
+	public static final FrameClock SYSTEM = new FrameClock() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+		@Override
+		public void park(Object blocker, long deadline) {
+			LockSupport.parkNanos(blocker, deadline - System.nanoTime());
+		}
+	};
+	
+	/**
+	 * Clock that only advances when it's set, for deterministic tests and
+	 * accelerated replays. Only one thread may set it.
+	 */
+	public static class Manual extends FrameClock {
+		private volatile long time;
+		private volatile Thread waiter = null;
+		private volatile long deadline = Long.MAX_VALUE;
+		
+		public Manual(long time) {
+			this.time = time;
+		}
+		
+		@Override
+		public long nanoTime() {
+			return time;
+		}
+		
+		/**
+		 * @param time
+		 *            ignored if it's earlier than the current time
+		 */
+		public void set(long time) {
+			if (time > this.time) {
+				this.time = time;
+				// only wake up the waiter when it's due
+				final Thread t = waiter;
+				if (t != null && time >= deadline)
+					LockSupport.unpark(t);
+			}
+		}
+		
+		public void advance(long nanos) {
+			set(time + nanos);
+		}
+		
+		@Override
+		public void park(Object blocker, long deadline) {
+			this.deadline = deadline;
+			waiter = Thread.currentThread();
+			if (time < deadline)
+				LockSupport.park(blocker);
+			waiter = null;
+			this.deadline = Long.MAX_VALUE;
+		}
+	}
+	
+	private static volatile FrameClock clock = SYSTEM;
+	private static volatile long frameTime = SYSTEM.nanoTime();
+	
+	public static FrameClock get() {
+		return clock;
+	}
+	
+	/**
+	 * Replaces the clock, which should continue at about the time of the
+	 * current one.
+	 */
+	public static void set(FrameClock clock) {
+		final FrameClock previous = FrameClock.clock;
+		FrameClock.clock = clock;
+		// a thread waiting for the old clock would never wake up
+		if (previous instanceof Manual) {
+			final Thread t = ((Manual) previous).waiter;
+			if (t != null)
+				LockSupport.unpark(t);
+		}
+	}
+	
+	public static long now() {
+		return clock.nanoTime();
+	}
+	
+	/**
+	 * @param time
+	 *            of the frame, usually the time its latest report arrived
+	 */
+	public static void beginFrame(long time) {
+		frameTime = time;
+	}
+	
+	public static long frameTime() {
+		return frameTime;
+	}
+	
+	public static long frameMillis() {
+		return frameTime / 1000000L;
+	}
+	
+	public abstract long nanoTime();
+	
+	/**
+	 * Blocks until the clock has reached the given time, might return
+	 * earlier.
+	 */
+	public abstract void park(Object blocker, long deadline);
+
+}
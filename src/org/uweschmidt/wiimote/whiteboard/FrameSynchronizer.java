@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard;
+
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
+
+/**
+ * Combines the latest reports of all Wiimotes into one frame, which is done
+ * for every new report of any Wiimote. Reports of the other Wiimotes that
+ * are older than {@link WWPreferences#SYNC_WINDOW} are extrapolated to the
+ * time of the frame (constant velocity between their last two reports),
+ * reports older than {@link WWPreferences#SYNC_TIMEOUT} are ignored.
+ * <p>
+ * The camera doesn't keep dots in their slots when others appear or
+ * disappear, so there's no extrapolation after the set of visible slots of a
+ * remote changed, nor for dots that moved further than plausible between two
+ * reports.
+ */
+public class FrameSynchronizer {
+
+	private static final int SLOTS = IRFrame.SLOTS;
+	// squared, in camera coordinates (0..1) per report
+	private static final double MAX_MOTION = 0.1 * 0.1;
+
+	private final int remotes;
+	private final long window, timeout;
+	private final boolean extrapolate;
+
+	// latest and previous report of each remote
+	private final double[] x, y, size;
+	private final boolean[] visible;
+	private final double[] prevX, prevY;
+	private final boolean[] prevVisible;
+	private final long[] time, prevTime;
+	private final boolean[] reported;
+
+	public FrameSynchronizer(int remotes) {
+		this(remotes, WWPreferences.SYNC_WINDOW * 1000000L, WWPreferences.SYNC_TIMEOUT * 1000000L, WWPreferences.SYNC_EXTRAPOLATE);
+	}
+
+	/**
+	 * @param window
+	 *            in nanoseconds
+	 * @param timeout
+	 *            in nanoseconds
+	 */
+	public FrameSynchronizer(int remotes, long window, long timeout, boolean extrapolate) {
+		this.remotes = remotes;
+		this.window = window;
+		this.timeout = timeout;
+		this.extrapolate = extrapolate;
+		final int n = remotes * SLOTS;
+		x = new double[n];
+		y = new double[n];
+		size = new double[n];
+		visible = new boolean[n];
+		prevX = new double[n];
+		prevY = new double[n];
+		prevVisible = new boolean[n];
+		time = new long[remotes];
+		prevTime = new long[remotes];
+		reported = new boolean[remotes];
+	}
+
+	/**
+	 * Takes the report of the given remote from the given frame.
+	 */
+	public void report(IRFrame raw, int r) {
+		boolean same = reported[r];
+		for (int i = 0; i < SLOTS; i++) {
+			final int d = IRFrame.index(r, i);
+			same &= visible[d] == raw.isVisible(d);
+		}
+		for (int i = 0; i < SLOTS; i++) {
+			final int d = IRFrame.index(r, i);
+			prevX[d] = x[d];
+			prevY[d] = y[d];
+			// slots might have been reassigned
+			prevVisible[d] = same && visible[d];
+			visible[d] = raw.isVisible(d);
+			x[d] = raw.getX(d);
+			y[d] = raw.getY(d);
+			size[d] = raw.getSize(d);
+		}
+		prevTime[r] = time[r];
+		time[r] = raw.getTime(r);
+		reported[r] = true;
+	}
+
+	public void reset(int r) {
+		reported[r] = false;
+	}
+
+	/**
+	 * Writes the dots of all remotes as of the given time to the given frame.
+	 */
+	public void sync(IRFrame frame, long now) {
+		for (int r = 0; r < remotes; r++) {
+			final long age = now - time[r];
+			final boolean stale = !reported[r] || age > timeout;
+			final long dt = time[r] - prevTime[r];
+			// don't extrapolate further than one report period
+			final double k = extrapolate && age > window && dt > 0 ? Math.min(1, (double) age / dt) : 0;
+			for (int i = 0; i < SLOTS; i++) {
+				final int d = IRFrame.index(r, i);
+				if (stale || !visible[d]) {
+					frame.clearDot(d);
+				} else if (k > 0 && prevVisible[d] && plausible(d)) {
+					frame.setDot(d, x[d] + k * (x[d] - prevX[d]), y[d] + k * (y[d] - prevY[d]), size[d]);
+				} else {
+					frame.setDot(d, x[d], y[d], size[d]);
+				}
+			}
+			frame.setTime(r, time[r]);
+		}
+	}
+	
+	private boolean plausible(int d) {
+		final double dx = x[d] - prevX[d], dy = y[d] - prevY[d];
+		return dx * dx + dy * dy <= MAX_MOTION;
+	}
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard;
+
+import java.util.Arrays;
+
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
+
+/**
+ * Follows the fused points of a frame (see {@link IRFrame#getPointX(int)})
+ * from frame to frame, so each pen keeps its track (slot and id) while it is
+ * visible, regardless of the order of the clusters, which changes when a dot
+ * of another pen appears or disappears.
+ * <p>
+ * The position of each track is predicted for the next frame (constant
+ * velocity) and the points are assigned to the closest predicted positions
+ * (closest pairs first) within the maximum distance. Tracks without a point
+ * end, points without a track start a new one in a free slot.
+ */
+public class PointTracker {
+	
+	public static final int TRACKS = 4;
+	
+	private final double maxDistance;
+	private long nextId = 1;
+	
+	// id of each track, 0 if the slot is free
+	private final long[] id = new long[TRACKS];
+	private final double[] x = new double[TRACKS], y = new double[TRACKS];
+	private final double[] vx = new double[TRACKS], vy = new double[TRACKS];
+	// cluster of each track in the current frame, -1 if none
+	private final int[] cluster = new int[TRACKS];
+	// track of each cluster in the current frame, -1 if none
+	private int[] track = new int[0];
+	// squared distance (float bits) << 32 | track << 16 | cluster
+	private long[] pairs = new long[0];
+	
+	public PointTracker() {
+		this(WWPreferences.TRACK_DISTANCE);
+	}
+	
+	/**
+	 * @param maxDistance
+	 *            maximum distance between the predicted and the actual
+	 *            position of a point in pixels
+	 */
+	public PointTracker(double maxDistance) {
+		this.maxDistance = maxDistance;
+		Arrays.fill(cluster, -1);
+	}
+	
+	/**
+	 * Assigns the points of the given frame to tracks, see
+	 * {@link #getCluster(int)}.
+	 */
+	public void track(IRFrame frame) {
+		final int n = frame.getClusterCount();
+		if (track.length < n) {
+			track = new int[n];
+			pairs = new long[n * TRACKS];
+		}
+		Arrays.fill(track, 0, n, -1);
+		
+		// pairs of tracks and points that are close enough
+		final double max = maxDistance * maxDistance;
+		int m = 0;
+		for (int t = 0; t < TRACKS; t++) {
+			cluster[t] = -1;
+			if (id[t] == 0) continue;
+			final double px = x[t] + vx[t], py = y[t] + vy[t];
+			for (int c = 0; c < n; c++) {
+				final double dx = frame.getPointX(c) - px, dy = frame.getPointY(c) - py;
+				final double dist = dx * dx + dy * dy;
+				// bits of non-negative floats have the same order as their values
+				if (dist <= max)
+					pairs[m++] = (long) Float.floatToIntBits((float) dist) << 32 | t << 16 | c;
+			}
+		}
+		Arrays.sort(pairs, 0, m);
+		
+		for (int k = 0; k < m; k++) {
+			final int t = (int) (pairs[k] >>> 16) & 0xFFFF;
+			final int c = (int) pairs[k] & 0xFFFF;
+			if (cluster[t] < 0 && track[c] < 0) {
+				cluster[t] = c;
+				track[c] = t;
+			}
+		}
+		
+		for (int t = 0; t < TRACKS; t++) {
+			final int c = cluster[t];
+			if (c >= 0) {
+				vx[t] = frame.getPointX(c) - x[t];
+				vy[t] = frame.getPointY(c) - y[t];
+				x[t] = frame.getPointX(c);
+				y[t] = frame.getPointY(c);
+			} else {
+				// not visible anymore (or moved too far)
+				id[t] = 0;
+			}
+		}
+		
+		// new tracks for the remaining points, in the order of the clusters
+		int t = 0;
+		for (int c = 0; c < n; c++) {
+			if (track[c] >= 0) continue;
+			while (t < TRACKS && id[t] != 0) t++;
+			if (t == TRACKS) break;
+			id[t] = nextId++;
+			x[t] = frame.getPointX(c);
+			y[t] = frame.getPointY(c);
+			vx[t] = vy[t] = 0;
+			cluster[t] = c;
+			track[c] = t;
+		}
+	}
+	
+	/**
+	 * @return cluster of the given track in the current frame, -1 if the
+	 *         track isn't visible
+	 */
+	public int getCluster(int track) {
+		return cluster[track];
+	}
+	
+	/**
+	 * @return id of the given track (unique, increasing), 0 if the track
+	 *         isn't visible
+	 */
+	public long getId(int track) {
+		return id[track];
+	}
+	
+	/**
+	 * @return the visible track with the lowest id, -1 if none
+	 */
+	public int getOldest() {
+		int oldest = -1;
+		for (int t = 0; t < TRACKS; t++)
+			if (id[t] != 0 && (oldest < 0 || id[t] < id[oldest]))
+				oldest = t;
+		return oldest;
+	}
+	
+	public void reset() {
+		Arrays.fill(id, 0);
+		Arrays.fill(cluster, -1);
+	}
+
+}
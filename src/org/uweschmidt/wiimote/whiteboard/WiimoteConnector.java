@@ -26,19 +26,32 @@
 package org.uweschmidt.wiimote.whiteboard;
 
 import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
+import org.uweschmidt.wiimote.whiteboard.source.IRSource;
 
 import wiiremotej.WiiRemote;
 import wiiremotej.WiiRemoteJ;
 
-public class WiimoteConnector {
+public class WiimoteConnector implements IRSource {
 	
 	private WiimoteDataHandler dh;
+	private volatile boolean running = false;
 	
 	public WiimoteConnector(WiimoteDataHandler dh) {
 		this.dh = dh;
 	}
 	
+	public void start() {
+		connect();
+	}
+	
+	public void stop() {
+		running = false;
+		if (WiiRemoteJ.isFindInProgress())
+			WiiRemoteJ.stopFind();
+	}
+	
 	public void connect() {
+		running = true;
 		if (!WWPreferences.WIIMOTE_BT_ADDRESSES.isEmpty()) {
 			WiimoteWhiteboard.getLogger().info(String.format("Directly connecting to bluetooth address(es) %s.", WWPreferences.WIIMOTE_BT_ADDRESSES));
 			for (int i = 0; i < Math.min(WWPreferences.WIIMOTE_BT_ADDRESSES.size(), WWPreferences.WIIMOTES); i++) {
@@ -53,7 +66,7 @@ public class WiimoteConnector {
 		new Thread(new Runnable() {
 			private boolean done = false;
 			public void run() {
-				while (!done) {
+				while (!done && running) {
 					try {
 						WiiRemote r = WiiRemoteJ.connectToRemote(address);
 						if (r != null && r.isConnected()) {
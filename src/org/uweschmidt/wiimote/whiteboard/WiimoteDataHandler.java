@@ -25,26 +25,33 @@
 
 package org.uweschmidt.wiimote.whiteboard;
 
-import java.awt.Point;
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.EventObject;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
 import java.util.logging.Level;
 
 import org.jdesktop.application.Application;
 import org.jdesktop.application.Application.ExitListener;
 import org.uweschmidt.wiimote.whiteboard.calibration.WiimoteCalibration;
 import org.uweschmidt.wiimote.whiteboard.ds.IRDot;
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+import org.uweschmidt.wiimote.whiteboard.ds.IRReportRing;
 import org.uweschmidt.wiimote.whiteboard.ds.Wiimote;
+import org.uweschmidt.wiimote.whiteboard.metrics.Metrics;
+import org.uweschmidt.wiimote.whiteboard.metrics.Metrics.Stage;
 import org.uweschmidt.wiimote.whiteboard.mouse.CursorControlStrategy;
 import org.uweschmidt.wiimote.whiteboard.mouse.Mouse;
 import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.MouseSmoothingStrategy;
 import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
 import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences.PreferencesListener;
+import org.uweschmidt.wiimote.whiteboard.source.IRSource;
+import org.uweschmidt.wiimote.whiteboard.source.ReplaySource;
+import org.uweschmidt.wiimote.whiteboard.source.SyntheticSource;
+import org.uweschmidt.wiimote.whiteboard.source.TraceRecorder;
 
 import wiiremotej.WiiRemote;
 import wiiremotej.WiiRemoteJ;
@@ -61,52 +68,157 @@ public class WiimoteDataHandler extends WiiRemoteAdapter implements ExitListener
 		public void wiimoteConnected(Wiimote wiimote);
 		public void wiimoteDisconnected(Wiimote wiimote);
 		public void irLights(Wiimote wiimote, IRDot[] lights);
-		public void irWarped(Map<Wiimote, IRDot[]> data, Point[] warped);
+		public void irWarped(Map<Wiimote, IRDot[]> data, Point2D[] warped);
 		public void batteryLevel(Wiimote wiimote, double level);
 	}
 	
-	private Map<WiiRemote, Wiimote> remotes = new LinkedHashMap<WiiRemote, Wiimote>(WWPreferences.WIIMOTES, 1f);
-	private Map<WiiRemote, WRIREvent> events = new LinkedHashMap<WiiRemote, WRIREvent>(WWPreferences.WIIMOTES, 1f);
+	// wiimotes by source of their events (WiiRemote or IRSource)
+	private Map<Object, Wiimote> remotes = new LinkedHashMap<Object, Wiimote>(WWPreferences.WIIMOTES, 1f);
+	// connected remotes by index (id-1), handed over to the processing thread
+	private final Object[] sources = new Object[WWPreferences.WIIMOTES];
+	private final Wiimote[] wiimotes = new Wiimote[WWPreferences.WIIMOTES];
+	private volatile boolean remotesChanged = false;
+	
+	// raw IR reports are passed from the Bluetooth threads to the processing thread
+	private final IRReportRing ring = new IRReportRing(WWPreferences.WIIMOTES * 32);
+	private final Thread processor = new Thread(new Runnable() {
+		public void run() {
+			process();
+		}
+	}, "IR Processing");
+	// reports that were not processed because a newer report of the same wiimote was already waiting (written by processing thread only)
+	private volatile long dropped = 0;
+	
+	/*
+	 * everything below is only accessed by the processing thread
+	 */
+	
+	// wiimotes that have sent data at least once
+	private final boolean[] received = new boolean[WWPreferences.WIIMOTES];
+	private int numReceived = 0, numConnected = 0;
+	// wiimotes that have sent data since the last frame
+	private final boolean[] pending = new boolean[WWPreferences.WIIMOTES];
+	
+	// reports are taken from the ring one by one and combined to frames by the synchronizer
+	private final IRFrame report = new IRFrame(WWPreferences.WIIMOTES);
+	private final FrameSynchronizer synchronizer = new FrameSynchronizer(WWPreferences.WIIMOTES);
+	private TraceRecorder recorder = null;
+	// all per-frame data is kept in this frame and reused for the next one
+	private final IRFrame frame = new IRFrame(WWPreferences.WIIMOTES);
+	// data of all active wiimotes for listeners, only rebuilt if the active wiimotes change
+	private final Map<Wiimote, IRDot[]> data = new LinkedHashMap<Wiimote, IRDot[]>(WWPreferences.WIIMOTES, 1f);
+	// pens are followed from frame to frame, so each one keeps its index (and smoothing) while visible
+	private final PointTracker tracker = new PointTracker();
+	// screen coordinates of the tracked pens, not rounded to keep sub-pixel precision
+	private final Point2D[] points = new Point2D[PointTracker.TRACKS];
+	private final Point2D[] warped = new Point2D[PointTracker.TRACKS];
+	// mean dot size of the tracked pens
+	private final double[] sizes = new double[PointTracker.TRACKS];
+	private final long[] trackIds = new long[PointTracker.TRACKS];
+	// track that controls the cursor, 0 if none
+	private long cursorTrack = 0;
 	private final WiimoteCalibration calibration;
+	private final IRSource source;
 	private static final WWPreferences prefs = WWPreferences.getPreferences();
-	private final Set<WiimoteDataListener> listener = Collections.synchronizedSet(new HashSet<WiimoteDataListener>());
+	// copy-on-write, so events are dispatched without holding a lock
+	private volatile WiimoteDataListener[] listener = new WiimoteDataListener[0];
+	private final Object listenerLock = new Object();
 
-	private boolean cursorControl = true;
+	private volatile boolean cursorControl = true;
 	
-	private MouseSmoothingStrategy mss[] = new MouseSmoothingStrategy[4];
+	private MouseSmoothingStrategy mss[] = new MouseSmoothingStrategy[PointTracker.TRACKS];
+	private int smoothingWindow;
 	private CursorControlStrategy cursorControlStrategy;
 	
 	public WiimoteDataHandler(WiimoteCalibration calibration) {
+		this(calibration, null);
+	}
+	
+	/**
+	 * @param source
+	 *            of the IR data, started by the handler, or null for the one
+	 *            chosen by the system properties (Wii Remotes by default)
+	 */
+	public WiimoteDataHandler(WiimoteCalibration calibration, IRSource source) {
 		this.calibration = calibration;		
+		for (int i = 0; i < points.length; i++)
+			points[i] = new Point2D.Double();
 		Application.getInstance().addExitListener(this);
 		prefs.addPreferencesListener(this);
 		preferencesChanged();
-		new WiimoteConnector(this).connect();
-//		WiiRemoteJ.findRemotes(this, WWPreferences.WIIMOTES);
+		if (WWPreferences.RECORD_FILE != null) {
+			try {
+				recorder = new TraceRecorder(new File(WWPreferences.RECORD_FILE));
+			} catch (IOException e) {
+				e.printStackTrace();
+				WiimoteWhiteboard.getLogger().log(Level.SEVERE, "Error on creating IR recording", e);
+			}
+		}
+		processor.setDaemon(true);
+		processor.setPriority(Thread.MAX_PRIORITY);
+		processor.start();
+		if (source != null) {
+			this.source = source;
+		} else if (WWPreferences.REPLAY_FILE != null) {
+			this.source = new ReplaySource(this, new File(WWPreferences.REPLAY_FILE), WWPreferences.REPLAY_SPEED, WWPreferences.REPLAY_LOOP);
+		} else if (WWPreferences.SIMULATE > 0) {
+			this.source = new SyntheticSource(this, calibration, WWPreferences.SIMULATE, WWPreferences.SIMULATE_RATE, WWPreferences.SIMULATE_PENS, WWPreferences.SIMULATE_JITTER, WWPreferences.SIMULATE_DROPOUTS);
+		} else {
+			this.source = new WiimoteConnector(this);
+//			WiiRemoteJ.findRemotes(this, WWPreferences.WIIMOTES);
+		}
+		this.source.start();
 	}
 	
 	public void enableIR(Wiimote wiimote) throws Exception {
-		if (wiimote != null && wiimote.getWiiRemote().isConnected()) {
+		if (isConnected(wiimote) && wiimote.getWiiRemote() != null) {
 			wiimote.getWiiRemote().setIRSensorEnabled(true, WRIREvent.BASIC, WWPreferences.SENSITIVITY_SETTINGS);
 		}
-		WiimoteWhiteboard.getLogger().info(String.format("(Re-)Setting IR sensor of Wiimote %d: %s", wiimote.getId(), (wiimote != null && wiimote.getWiiRemote().isConnected() ? "done" : "not connected")));
+		WiimoteWhiteboard.getLogger().info(String.format("(Re-)Setting IR sensor of Wiimote %d: %s", wiimote.getId(), (isConnected(wiimote) ? "done" : "not connected")));
+	}
+	
+	/**
+	 * Adds a Wiimote whose IR data doesn't come from a WiiRemote, see
+	 * {@link #reportIR(Wiimote, long, double[], double[], double[])}.
+	 * 
+	 * @return the new Wiimote, or null if the maximum number of Wiimotes is
+	 *         already connected
+	 */
+	public Wiimote addWiimote(Object source, String address) {
+		final Wiimote wiimote = add(source, null, address);
+		if (wiimote != null) {
+			for (WiimoteDataListener l : listener)
+				l.wiimoteConnected(wiimote);
+		}
+		return wiimote;
+	}
+	
+	private Wiimote add(Object source, WiiRemote remote, String address) {
+		synchronized (this) {
+			final int id = remotes.size()+1;
+			if (id > WWPreferences.WIIMOTES) return null;
+			final Wiimote wiimote = new Wiimote(remote, address, id);
+			remotes.put(source, wiimote);
+			sources[id-1] = source;
+			wiimotes[id-1] = wiimote;
+			remotesChanged = true;
+			return wiimote;
+		}
 	}
 	
 	void addRemote(final WiiRemote remote) {
 		try {
-			int id = remotes.size()+1;
-			final Wiimote wiimote = new Wiimote(remote, remote.getBluetoothAddress(), id);
-			remotes.put(remote, wiimote);
+			final Wiimote wiimote = add(remote, remote, remote.getBluetoothAddress());
+			if (wiimote == null) return;
+			final int id = wiimote.getId();
 			remote.setAccelerometerEnabled(false);
 //			remote.setIRSensorEnabled(true, WRIREvent.BASIC, SENSITIVITY_BLOCK1, SENSITIVITY_BLOCK2);
 			enableIR(wiimote);
-			remote.setLEDIlluminated(id-1, true);			
+			remote.setLEDIlluminated((id-1) % 4, true);			
 			remote.setUseMouse(false);
 			
-			synchronized (listener) {
-				for (WiimoteDataListener l : listener)
-					l.wiimoteConnected(wiimote);
-			}
+			for (WiimoteDataListener l : listener)
+				l.wiimoteConnected(wiimote);
 			
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -143,8 +255,22 @@ public class WiimoteDataHandler extends WiiRemoteAdapter implements ExitListener
 	 */
 	
 	public void willExit(EventObject event) {
-		for (WiiRemote remote : remotes.keySet())
-			remote.disconnect();
+		source.stop();
+		processor.interrupt();
+		WiimoteWhiteboard.getLogger().info(String.format("IR reports overwritten: %d, dropped: %d", getOverwrittenReports(), getDroppedReports()));
+		WiimoteWhiteboard.getLogger().info(String.format("Cursor events injected: %d, saved: %d", Mouse.getOutput().getInjected(), Mouse.getOutput().getSaved()));
+		if (recorder != null) {
+			try {
+				// wait for the current frame
+				processor.join(100);
+				recorder.close();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		for (Object source : remotes.keySet())
+			if (source instanceof WiiRemote)
+				((WiiRemote) source).disconnect();
 	}
 	
 	public boolean canExit(EventObject event) {
@@ -157,51 +283,185 @@ public class WiimoteDataHandler extends WiiRemoteAdapter implements ExitListener
 	 */
 	
 	@Override
-	public synchronized void IRInputReceived(WRIREvent e) {
-		events.put(e.getSource(), e);
-		// wait till data from all connected wiimotes was received once and only process input on data from first wiimote to reduce the number of times the function gets called
-		if (events.size() == getNumberOfConnectedWiimotes() && remotes.get(e.getSource()).getId() == 1)
-			IRInputReceived();
-	}
-	
-	private void IRInputReceived() {
-		boolean firstDotVisible = false;
-		Map<Wiimote, IRDot[]> data = new LinkedHashMap<Wiimote, IRDot[]>();
-		for (WiiRemote r : events.keySet()) {
-			Wiimote wiimote = remotes.get(r);
-			IRDot[] dots = IRDot.getIRDots(events.get(r).getIRLights());
+	public void IRInputReceived(WRIREvent e) {
+		// just hand over the raw data, everything else is done by the processing thread
+		final long time = FrameClock.now();
+		final Object source = e.getSource();
+		for (int r = 0; r < sources.length; r++) {
+			if (sources[r] == source) {
+				ring.put(r, time, e.getIRLights());
+				Metrics.latency(Stage.RECEIVE, time);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * IR data of a Wiimote added by {@link #addWiimote(Object, String)}.
+	 * 
+	 * @param time
+	 *            {@link FrameClock#now()} of the report
+	 * @param x
+	 *            NaN if the dot of a slot isn't visible
+	 */
+	public void reportIR(Wiimote wiimote, long time, double[] x, double[] y, double[] size) {
+		ring.put(wiimote.getId()-1, time, x, y, size);
+		Metrics.latency(Stage.RECEIVE, time);
+	}
+	
+	
+	/*
+	 * PROCESSING THREAD
+	 */
+	
+	private void process() {
+		while (!Thread.currentThread().isInterrupted()) {
+			ring.await();
+			if (remotesChanged)
+				updateRemotes();
 			
-			synchronized (listener) {
-				for (WiimoteDataListener l : listener)
-					l.irLights(wiimote, dots);
+			// take all waiting reports, only the latest one of each wiimote is processed
+			boolean any = false;
+			long time = 0;
+			int r;
+			while ((r = ring.poll(report)) >= 0) {
+				if (frame.getWiimote(r) == null) continue;
+				if (pending[r]) dropped++;
+				pending[r] = any = true;
+				time = Math.max(time, report.getTime(r));
+				Metrics.latency(Stage.QUEUE, report.getTime(r));
+				Metrics.report(r);
+				synchronizer.report(report, r);
+				if (recorder != null)
+					recorder.record(r, report);
+				if (!received[r]) {
+					received[r] = true;
+					numReceived++;
+				}
+			}
+			if (!any) continue;
+			for (int i = 0; i < pending.length; i++)
+				pending[i] = false;
+			
+			// wait till data from all connected wiimotes was received once
+			if (numReceived == numConnected) {
+				try {
+					synchronizer.sync(frame, time);
+					IRInputReceived(time);
+					Metrics.latency(Stage.TOTAL, time);
+					Metrics.frame();
+				} catch (Exception e) {
+					e.printStackTrace();
+					WiimoteWhiteboard.getLogger().log(Level.SEVERE, "Error on processing IR data", e);
+				}
+			}
+		}
+	}
+	
+	private synchronized void updateRemotes() {
+		remotesChanged = false;
+		numConnected = 0;
+		for (int r = 0; r < wiimotes.length; r++) {
+			final Wiimote old = frame.getWiimote(r);
+			if (old != null && old != wiimotes[r]) {
+				frame.setActive(r, false);
+				data.remove(old);
+				synchronizer.reset(r);
+				if (received[r]) {
+					received[r] = false;
+					numReceived--;
+				}
 			}
+			frame.setWiimote(r, wiimotes[r]);
+			if (wiimotes[r] != null)
+				numConnected++;
+		}
+	}
+	
+	/**
+	 * @param time
+	 *            of the latest report of the frame
+	 */
+	private void IRInputReceived(long time) {
+		boolean firstDotVisible = false, anyCalibrated = false, changed = false;
+		for (int r = 0; r < frame.getRemotes(); r++) {
+			final Wiimote wiimote = frame.getWiimote(r);
+			if (wiimote == null || !received[r]) continue;
+			final IRDot[] dots = frame.getLights(r);
+			
+			for (WiimoteDataListener l : listener)
+				l.irLights(wiimote, dots);
 
 			// exclude points from uncalibrated wiimotes during "normal operation"
-			if (!calibration.isDone() || calibration.isCalibrated(wiimote)) {
-				firstDotVisible = firstDotVisible || dots[0] != null;
-				data.put(wiimote, dots);
+			final boolean calibrated = calibration.isCalibrated(wiimote);
+			final boolean active = !calibration.isDone() || calibrated;
+			if (frame.isActive(r) != active) {
+				frame.setActive(r, active);
+				changed = true;
 			}
+			firstDotVisible = firstDotVisible || (active && dots[0] != null);
+			anyCalibrated = anyCalibrated || (active && calibrated);
+		}
+		
+		if (changed) {
+			data.clear();
+			for (int r = 0; r < frame.getRemotes(); r++)
+				if (frame.isActive(r))
+					data.put(frame.getWiimote(r), frame.getLights(r));
 		}
 
 		if (calibration.isDone()) {
 			// should always be true, but just in case...
-			if (calibration.isAnyCalibrated(data.keySet())) {
-				Point warped[] = calibration.warp(data);
-				for (int i = 0; i < 4; i++) {
-					if (warped[i] != null) {
-						warped[i] = mss[i].translate(warped[i]);
+			if (anyCalibrated) {
+				calibration.warp(frame);
+				tracker.track(frame);
+				// shared with the delayed presses and releases of the strategies, see Mouse.schedule()
+				synchronized (Mouse.class) {
+					FrameClock.beginFrame(time);
+					long t = System.nanoTime();
+					int cursor = -1;
+					for (int i = 0; i < PointTracker.TRACKS; i++) {
+						final int c = tracker.getCluster(i);
+						if (tracker.getId(i) != trackIds[i]) {
+							// another pen, don't smooth with the positions of the previous one
+							mss[i].reset();
+							trackIds[i] = tracker.getId(i);
+						}
+						if (c >= 0) {
+							points[i].setLocation(frame.getPointX(c), frame.getPointY(c));
+							warped[i] = mss[i].translate(points[i]);
+							double size = 0;
+							for (int k = 0; k < frame.getMemberCount(c); k++)
+								size += frame.getSize(frame.getMember(c, k));
+							sizes[i] = size / frame.getMemberCount(c);
+							if (trackIds[i] == cursorTrack)
+								cursor = i;
+						} else {
+							warped[i] = null;
+							sizes[i] = 0;
+						}
+					}
+					if (cursor < 0) {
+						// the cursor stays with one pen until it's lifted, then the
+						// pen that is visible the longest takes over in the next frame
+						if (cursorTrack == 0 && (cursor = tracker.getOldest()) >= 0)
+							cursorTrack = trackIds[cursor];
+						else
+							cursorTrack = 0;
+					}
+					t = Metrics.record(Stage.SMOOTHING, t);
+					
+					if (isCursorControl()) {
+						cursorControlStrategy.process(cursor < 0 ? null : warped[cursor]);
+						t = Metrics.record(Stage.CURSOR_CONTROL, t);
 					} else {
-						mss[i].reset();
+//						if (Mouse.LEFT_BUTTON.isPressed())
+							Mouse.LEFT_BUTTON.setPressed(false);
+//						if (Mouse.RIGHT_BUTTON.isPressed())
+							Mouse.RIGHT_BUTTON.setPressed(false);
 					}
-				}
-				
-				if (isCursorControl()) {
-					cursorControlStrategy.process(warped[0]);
-				} else {
-//					if (Mouse.LEFT_BUTTON.isPressed())
-						Mouse.LEFT_BUTTON.setPressed(false);
-//					if (Mouse.RIGHT_BUTTON.isPressed())
-						Mouse.RIGHT_BUTTON.setPressed(false);
+					Mouse.flush();
+					Metrics.record(Stage.MOUSE, t);
 				}
 				
 //				if (warped[0] != null) {
@@ -218,10 +478,8 @@ public class WiimoteDataHandler extends WiiRemoteAdapter implements ExitListener
 //					Mouse.LEFT_BUTTON.setPressed(false);
 //				}
 
-				synchronized (listener) {
-					for (WiimoteDataListener l : listener)
-						l.irWarped(data, warped);
-				}
+				for (WiimoteDataListener l : listener)
+					l.irWarped(data, warped);
 
 			}
 		} else if (calibration.inProgress()) {
@@ -233,10 +491,8 @@ public class WiimoteDataHandler extends WiiRemoteAdapter implements ExitListener
 	
 	@Override
 	public void statusReported(WRStatusEvent e) {
-		synchronized (listener) {
-			for (WiimoteDataListener l : listener)
-				l.batteryLevel(remotes.get(e.getSource()), e.getBatteryLevel());
-		}
+		for (WiimoteDataListener l : listener)
+			l.batteryLevel(remotes.get(e.getSource()), e.getBatteryLevel());
 	}
 
 	@Override
@@ -261,14 +517,18 @@ public class WiimoteDataHandler extends WiiRemoteAdapter implements ExitListener
 	public void disconnected() {
 		// TODO support dis-/reconnecting?
 		WiiRemoteJ.stopFind();
-		WiiRemote remove = null;
-		for (WiiRemote remote : remotes.keySet()) {
-			if (!remote.isConnected()) {
+		Object remove = null;
+		for (Object remote : remotes.keySet()) {
+			if (remote instanceof WiiRemote && !((WiiRemote) remote).isConnected()) {
 				remove = remote;
-				synchronized (listener) {
-					for (WiimoteDataListener l : listener)
-						l.wiimoteDisconnected(remotes.get(remote));
+				synchronized (this) {
+					final int r = remotes.get(remote).getId()-1;
+					sources[r] = null;
+					wiimotes[r] = null;
+					remotesChanged = true;
 				}
+				for (WiimoteDataListener l : listener)
+					l.wiimoteDisconnected(remotes.get(remote));
 				break;
 			}
 		}
@@ -281,11 +541,45 @@ public class WiimoteDataHandler extends WiiRemoteAdapter implements ExitListener
 	 */
 	
 	public void addWiimoteDataListener(WiimoteDataListener l) {
-		listener.add(l);
+		addWiimoteDataListener(l, false);
+	}
+	
+	/**
+	 * @param async
+	 *            if true, events are delivered on a separate thread and IR
+	 *            data that the listener doesn't take in time is replaced by
+	 *            newer data (see {@link WiimoteDataMailbox}), otherwise
+	 *            events are delivered on the processing thread, which the
+	 *            listener must not hold up
+	 */
+	public void addWiimoteDataListener(WiimoteDataListener l, boolean async) {
+		synchronized (listenerLock) {
+			if (indexOf(l) >= 0) return;
+			final WiimoteDataListener[] ls = new WiimoteDataListener[listener.length + 1];
+			System.arraycopy(listener, 0, ls, 0, listener.length);
+			ls[listener.length] = async ? new WiimoteDataMailbox(l) : l;
+			listener = ls;
+		}
 	}
 	
 	public void removeWiimoteDataListener(WiimoteDataListener l) {
-		listener.remove(l);
+		synchronized (listenerLock) {
+			final int i = indexOf(l);
+			if (i < 0) return;
+			if (listener[i] instanceof WiimoteDataMailbox)
+				((WiimoteDataMailbox) listener[i]).stop();
+			final WiimoteDataListener[] ls = new WiimoteDataListener[listener.length - 1];
+			System.arraycopy(listener, 0, ls, 0, i);
+			System.arraycopy(listener, i + 1, ls, i, ls.length - i);
+			listener = ls;
+		}
+	}
+	
+	private int indexOf(WiimoteDataListener l) {
+		for (int i = 0; i < listener.length; i++)
+			if (listener[i] == l || (listener[i] instanceof WiimoteDataMailbox && ((WiimoteDataMailbox) listener[i]).getListener() == l))
+				return i;
+		return -1;
 	}
 	
 	/*
@@ -310,7 +604,13 @@ public class WiimoteDataHandler extends WiiRemoteAdapter implements ExitListener
 		if (cursorControlStrategy == null || !cursorControlStrategy.getClass().getName().equals(prefs.getCursorControl())) {
 			try {
 				Class<?> c = Class.forName(prefs.getCursorControl());
-				cursorControlStrategy = ((Class<? extends CursorControlStrategy>)c).newInstance();
+				final CursorControlStrategy ccs = ((Class<? extends CursorControlStrategy>)c).newInstance();
+				synchronized (Mouse.class) {
+					// the old one must not press any buttons anymore
+					if (cursorControlStrategy != null)
+						releaseCursor();
+					cursorControlStrategy = ccs;
+				}
 			} catch (Exception e) {
 				e.printStackTrace();
 				WiimoteWhiteboard.getLogger().log(Level.SEVERE, "Cursor Control Method error.", e);
@@ -320,10 +620,11 @@ public class WiimoteDataHandler extends WiiRemoteAdapter implements ExitListener
 
 	@SuppressWarnings("unchecked")
 	private void updateMSS() {
-		if (mss[0] == null || !mss[0].getClass().getName().equals(prefs.getMouseSmoothing())) {
+		if (mss[0] == null || !mss[0].getClass().getName().equals(prefs.getMouseSmoothing()) || smoothingWindow != prefs.getSmoothingWindow()) {
 			try {
+				smoothingWindow = prefs.getSmoothingWindow();
 				Class<?> c = Class.forName(prefs.getMouseSmoothing());
-				for (int i = 0; i < 4; i++)
+				for (int i = 0; i < PointTracker.TRACKS; i++)
 					mss[i] = ((Class<? extends MouseSmoothingStrategy>)c).newInstance();
 			} catch (Exception e) {
 				e.printStackTrace();
@@ -337,14 +638,31 @@ public class WiimoteDataHandler extends WiiRemoteAdapter implements ExitListener
 	 */
 	
 	public boolean isConnected() {
-		for (WiiRemote remote : remotes.keySet()) {
-			if (remote.isConnected()) return true;
+		for (Wiimote wiimote : remotes.values()) {
+			if (isConnected(wiimote)) return true;
 		}
 		return false;
 	}
 	
 	public boolean isConnected(Wiimote wiimote) {
-		return wiimote != null && wiimote.getWiiRemote().isConnected();
+		// Wiimotes without WiiRemote stay connected
+		return wiimote != null && (wiimote.getWiiRemote() != null ? wiimote.getWiiRemote().isConnected() : remotes.containsValue(wiimote));
+	}
+	
+	/**
+	 * @return number of IR reports that were replaced by newer ones before
+	 *         they could be taken by the processing thread
+	 */
+	public long getOverwrittenReports() {
+		return ring.getOverwritten();
+	}
+	
+	/**
+	 * @return number of IR reports that were skipped by the processing thread
+	 *         because a newer report of the same Wiimote was already waiting
+	 */
+	public long getDroppedReports() {
+		return dropped;
 	}
 	
 	public int getNumberOfConnectedWiimotes() {
@@ -355,12 +673,44 @@ public class WiimoteDataHandler extends WiiRemoteAdapter implements ExitListener
 		return remotes.values();
 	}
 
+	/**
+	 * Dot sizes (0..1) of the points of the current
+	 * {@link WiimoteDataListener#irWarped(Map, Point2D[])} call, only valid
+	 * during that call. Negative if the sizes are unknown, which is the case
+	 * for the basic IR reports of the Wiimotes.
+	 */
+	public double[] getSizes() {
+		return sizes;
+	}
+	
+	/**
+	 * Track ids (see {@link PointTracker#getId(int)}) of the points of the
+	 * current {@link WiimoteDataListener#irWarped(Map, Point2D[])} call, only
+	 * valid during that call.
+	 */
+	public long[] getTrackIds() {
+		return trackIds;
+	}
+	
 	public boolean isCursorControl() {
 		return cursorControl;
 	}
 
 	public void setCursorControl(boolean cursorControl) {
-		this.cursorControl = cursorControl;
+		synchronized (Mouse.class) {
+			this.cursorControl = cursorControl;
+			Mouse.setCursorControl(cursorControl);
+			if (!cursorControl && cursorControlStrategy != null)
+				releaseCursor();
+		}
+	}
+	
+	// holding the lock of Mouse.class
+	private void releaseCursor() {
+		cursorControlStrategy.reset();
+		Mouse.LEFT_BUTTON.setPressed(false);
+		Mouse.RIGHT_BUTTON.setPressed(false);
+		Mouse.flush();
 	}
 	
 }
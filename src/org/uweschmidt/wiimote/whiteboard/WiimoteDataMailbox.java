@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard;
+
+import java.awt.geom.Point2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+import org.uweschmidt.wiimote.whiteboard.WiimoteDataHandler.WiimoteDataListener;
+import org.uweschmidt.wiimote.whiteboard.ds.IRDot;
+import org.uweschmidt.wiimote.whiteboard.ds.Wiimote;
+import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
+
+/**
+ * Delivers the events of the {@link WiimoteDataHandler} to a listener on a
+ * thread of its own, so a slow listener doesn't hold up the IR processing or
+ * the other listeners.
+ * <p>
+ * IR data is kept in latest-value slots (one for the lights of each Wiimote,
+ * one for the warped points): data that the listener hasn't taken yet is
+ * replaced by newer data. The slots are triple buffers, so neither side ever
+ * waits for the other. Connection and battery events are queued and
+ * delivered in order, before any IR data.
+ */
+class WiimoteDataMailbox implements WiimoteDataListener, Runnable {
+	
+	private final WiimoteDataListener listener;
+	private final Thread thread;
+	private volatile boolean running = true;
+	// the delivery thread is (about to be) parked
+	private volatile boolean waiting = false;
+	
+	private final Queue<Runnable> events = new ConcurrentLinkedQueue<Runnable>();
+	// lights by Wiimote index (id-1)
+	private final Slot<Dots>[] lights;
+	private final Slot<Frame> warped = new Slot<Frame>(new Frame(), new Frame(), new Frame());
+	
+	public WiimoteDataMailbox(WiimoteDataListener listener) {
+		this.listener = listener;
+		// no generic array creation, only Slot<Dots> are put in
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		final Slot<Dots>[] lights = new Slot[WWPreferences.WIIMOTES];
+		this.lights = lights;
+		for (int r = 0; r < lights.length; r++)
+			lights[r] = new Slot<Dots>(new Dots(), new Dots(), new Dots());
+		thread = new Thread(this, "WiimoteDataListener " + listener.getClass().getSimpleName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	public WiimoteDataListener getListener() {
+		return listener;
+	}
+	
+	public void stop() {
+		running = false;
+		LockSupport.unpark(thread);
+	}
+	
+	/*
+	 * PRODUCER (irLights and irWarped: processing thread only)
+	 */
+	
+	public void irLights(Wiimote wiimote, IRDot[] lights) {
+		final Slot<Dots> slot = this.lights[wiimote.getId() - 1];
+		slot.back().copy(wiimote, lights);
+		slot.publish();
+		wakeUp();
+	}
+	
+	public void irWarped(Map<Wiimote, IRDot[]> data, Point2D[] warped) {
+		this.warped.back().copy(data, warped);
+		this.warped.publish();
+		wakeUp();
+	}
+	
+	public void batteryLevel(final Wiimote wiimote, final double level) {
+		post(new Runnable() {
+			public void run() {
+				listener.batteryLevel(wiimote, level);
+			}
+		});
+	}
+	
+	public void wiimoteConnected(final Wiimote wiimote) {
+		post(new Runnable() {
+			public void run() {
+				listener.wiimoteConnected(wiimote);
+			}
+		});
+	}
+	
+	public void wiimoteDisconnected(final Wiimote wiimote) {
+		post(new Runnable() {
+			public void run() {
+				listener.wiimoteDisconnected(wiimote);
+			}
+		});
+	}
+	
+	private void post(Runnable event) {
+		events.add(event);
+		wakeUp();
+	}
+	
+	private void wakeUp() {
+		// a busy delivery thread checks for new data anyway
+		if (waiting)
+			LockSupport.unpark(thread);
+	}
+	
+	/*
+	 * CONSUMER
+	 */
+	
+	public void run() {
+		while (running) {
+			try {
+				final Runnable event = events.poll();
+				if (event != null) {
+					event.run();
+					continue;
+				}
+				boolean delivered = false;
+				for (Slot<Dots> slot : lights) {
+					if (slot.take()) {
+						listener.irLights(slot.front().wiimote, slot.front().view);
+						delivered = true;
+					}
+				}
+				if (warped.take()) {
+					listener.irWarped(warped.front().data, warped.front().view);
+					delivered = true;
+				}
+				if (!delivered)
+					await();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				WiimoteWhiteboard.getLogger().log(Level.SEVERE, "Error in WiimoteDataListener", e);
+			}
+		}
+	}
+	
+	private void await() {
+		waiting = true;
+		// check again, the producer might have missed the flag
+		boolean pending = !events.isEmpty() || warped.isPending();
+		for (Slot<Dots> slot : lights)
+			pending = pending || slot.isPending();
+		if (!pending && running)
+			LockSupport.park(this);
+		waiting = false;
+	}
+	
+	/**
+	 * Triple buffer: the producer writes to the back buffer and swaps it with
+	 * the middle one, the consumer swaps the front buffer with the middle one
+	 * if it has been published since.
+	 */
+	private static class Slot<T> {
+		private static final int PENDING = 4;
+		private final Object[] buffers;
+		// index of the middle buffer, plus PENDING if it has been published but not taken
+		private final AtomicInteger middle = new AtomicInteger(1);
+		// producer only
+		private int back = 0;
+		// consumer only
+		private int front = 2;
+		
+		public Slot(T a, T b, T c) {
+			buffers = new Object[] { a, b, c };
+		}
+		
+		@SuppressWarnings("unchecked")
+		public T back() {
+			return (T) buffers[back];
+		}
+		
+		public void publish() {
+			back = middle.getAndSet(back | PENDING) & ~PENDING;
+		}
+		
+		public boolean isPending() {
+			return (middle.get() & PENDING) != 0;
+		}
+		
+		/**
+		 * @return true if new data is available in the front buffer
+		 */
+		public boolean take() {
+			if (!isPending()) return false;
+			front = middle.getAndSet(front) & ~PENDING;
+			return true;
+		}
+		
+		@SuppressWarnings("unchecked")
+		public T front() {
+			return (T) buffers[front];
+		}
+	}
+	
+	// copy of the lights of a Wiimote
+	private static class Dots {
+		private Wiimote wiimote;
+		private final IRDot[] dots = new IRDot[4];
+		// visible dots (null if not visible)
+		private IRDot[] view = new IRDot[4];
+		
+		public void copy(Wiimote wiimote, IRDot[] lights) {
+			this.wiimote = wiimote;
+			if (view.length != lights.length) {
+				view = new IRDot[lights.length];
+			}
+			for (int i = 0; i < lights.length; i++) {
+				final IRDot l = lights[i];
+				if (l == null) {
+					view[i] = null;
+				} else if (i < dots.length && dots[i] != null && dots[i].getId() == l.getId()) {
+					dots[i].set(l.getX(), l.getY(), l.getSize());
+					view[i] = dots[i];
+				} else {
+					view[i] = new IRDot(l);
+					if (i < dots.length)
+						dots[i] = view[i];
+				}
+			}
+		}
+	}
+	
+	// copy of the data of irWarped
+	private static class Frame {
+		private final Map<Wiimote, IRDot[]> data = new LinkedHashMap<Wiimote, IRDot[]>(WWPreferences.WIIMOTES, 1f);
+		// keys of data, in order (iterating over the given map would allocate)
+		private Wiimote[] keys = new Wiimote[0];
+		private final Dots[] lights = new Dots[WWPreferences.WIIMOTES];
+		private final Point2D.Double[] points = new Point2D.Double[4];
+		// non-null points
+		private final Point2D[] view = new Point2D[4];
+		
+		public Frame() {
+			for (int r = 0; r < lights.length; r++)
+				lights[r] = new Dots();
+			for (int i = 0; i < points.length; i++)
+				points[i] = new Point2D.Double();
+		}
+		
+		public void copy(Map<Wiimote, IRDot[]> data, Point2D[] warped) {
+			if (!hasKeys(data)) {
+				this.data.clear();
+				keys = data.keySet().toArray(new Wiimote[data.size()]);
+				for (Wiimote wiimote : keys)
+					this.data.put(wiimote, null);
+			}
+			for (Wiimote wiimote : keys) {
+				final IRDot[] l = data.get(wiimote);
+				final Dots d = lights[wiimote.getId() - 1];
+				if (l != null)
+					d.copy(wiimote, l);
+				// view might have been replaced
+				this.data.put(wiimote, l != null ? d.view : null);
+			}
+			for (int i = 0; i < view.length; i++) {
+				if (i < warped.length && warped[i] != null) {
+					points[i].setLocation(warped[i]);
+					view[i] = points[i];
+				} else {
+					view[i] = null;
+				}
+			}
+		}
+		
+		private boolean hasKeys(Map<Wiimote, IRDot[]> data) {
+			if (data.size() != keys.length)
+				return false;
+			for (Wiimote wiimote : keys)
+				if (!data.containsKey(wiimote))
+					return false;
+			return true;
+		}
+	}
+
+}
@@ -43,7 +43,9 @@ import org.uweschmidt.wiimote.whiteboard.gui.HelpHandler;
 import org.uweschmidt.wiimote.whiteboard.gui.LogWindow;
 import org.uweschmidt.wiimote.whiteboard.gui.MainPanel;
 import org.uweschmidt.wiimote.whiteboard.gui.MenuBar;
+import org.uweschmidt.wiimote.whiteboard.gui.MetricsWindow;
 import org.uweschmidt.wiimote.whiteboard.gui.PreferencesWindow;
+import org.uweschmidt.wiimote.whiteboard.metrics.Metrics;
 import org.uweschmidt.wiimote.whiteboard.mouse.Mouse;
 import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
 import org.uweschmidt.wiimote.whiteboard.tuio.TuioTransmitter;
@@ -93,6 +95,7 @@ public class WiimoteWhiteboard extends SingleFrameApplication {
 
 			final JFrame f = getMainFrame();
 			LogWindow lw = new LogWindow();
+			Metrics.getMetrics().start();
 			
 			final WiimoteCalibration calibration = new WiimoteCalibration();
 			WiimoteDataHandler dh = new WiimoteDataHandler(calibration);
@@ -103,7 +106,8 @@ public class WiimoteWhiteboard extends SingleFrameApplication {
 			AboutWindow af = new AboutWindow();
 			HelpHandler hh = new HelpHandler();
 			PreferencesWindow pf = new PreferencesWindow(mp, hh);
-			f.setJMenuBar(new MenuBar(pf, af, hh, lw));
+			MetricsWindow mw = new MetricsWindow();
+			f.setJMenuBar(new MenuBar(pf, af, hh, lw, mw));
 			registerForMacOSXEvents(pf, af);
 			
 			// update Mouse's screen
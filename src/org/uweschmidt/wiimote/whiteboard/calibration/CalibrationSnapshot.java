@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.calibration;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.media.jai.PerspectiveTransform;
+
+/**
+ * Immutable result of a calibration: the final calibration points of each
+ * calibrated Wiimote and the transformations computed from them. A new
+ * calibration (or a loaded one) replaces the snapshot as a whole, so readers
+ * never see a partially updated calibration.
+ */
+public final class CalibrationSnapshot {
+	
+	public static final CalibrationSnapshot EMPTY = new CalibrationSnapshot(Collections.<String, Double[]>emptyMap());
+	
+	// final 16 value double array (4<->4 mapping) for each wiimote, used to create transformer
+	private final Map<String, Double[]> finals;
+	private final Map<String, PerspectiveTransform> transformer;
+	// same transformations, used for warping
+	private final Map<String, Homography> homographies;
+	
+	public CalibrationSnapshot(Map<String, Double[]> finals) {
+		final Map<String, Double[]> f = new LinkedHashMap<String, Double[]>();
+		final Map<String, PerspectiveTransform> t = new LinkedHashMap<String, PerspectiveTransform>();
+		final Map<String, Homography> h = new LinkedHashMap<String, Homography>();
+		for (Map.Entry<String, Double[]> e : finals.entrySet()) {
+			final Double[] d = e.getValue().clone();
+			final PerspectiveTransform p = PerspectiveTransform.getQuadToQuad(d[0], d[1], d[2], d[3], d[4], d[5], d[6], d[7], d[8], d[9], d[10], d[11], d[12], d[13], d[14], d[15]);
+			f.put(e.getKey(), d);
+			t.put(e.getKey(), p);
+			h.put(e.getKey(), new Homography(p));
+		}
+		this.finals = Collections.unmodifiableMap(f);
+		this.transformer = Collections.unmodifiableMap(t);
+		this.homographies = Collections.unmodifiableMap(h);
+	}
+	
+	/**
+	 * @return copy of the final calibration points of each Wiimote
+	 */
+	public Map<String, Double[]> getFinals() {
+		final Map<String, Double[]> f = new LinkedHashMap<String, Double[]>();
+		for (Map.Entry<String, Double[]> e : finals.entrySet())
+			f.put(e.getKey(), e.getValue().clone());
+		return f;
+	}
+	
+	/**
+	 * @return copy of the transformation of each Wiimote
+	 */
+	public Map<String, PerspectiveTransform> getTransformer() {
+		final Map<String, PerspectiveTransform> t = new LinkedHashMap<String, PerspectiveTransform>();
+		for (Map.Entry<String, PerspectiveTransform> e : transformer.entrySet())
+			t.put(e.getKey(), (PerspectiveTransform) e.getValue().clone());
+		return t;
+	}
+	
+	/**
+	 * @return transformation of the Wiimote with the given address, null if
+	 *         it isn't calibrated
+	 */
+	public Homography getHomography(String address) {
+		return homographies.get(address);
+	}
+	
+	public boolean isCalibrated(String address) {
+		return homographies.containsKey(address);
+	}
+	
+	public boolean isEmpty() {
+		return homographies.isEmpty();
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.calibration;
+
+import java.awt.geom.Point2D;
+
+import javax.media.jai.PerspectiveTransform;
+
+/**
+ * Perspective transformation of 2D points with the coefficients of a
+ * {@link PerspectiveTransform}, without its generality (and overhead).
+ */
+public final class Homography {
+	
+	private final double m00, m01, m02, m10, m11, m12, m20, m21, m22;
+	
+	public Homography(PerspectiveTransform t) {
+		final double[][] m = t.getMatrix(new double[3][3]);
+		m00 = m[0][0]; m01 = m[0][1]; m02 = m[0][2];
+		m10 = m[1][0]; m11 = m[1][1]; m12 = m[1][2];
+		m20 = m[2][0]; m21 = m[2][1]; m22 = m[2][2];
+	}
+	
+	/**
+	 * Transforms the first n points (x[i], y[i]) to (tx[i], ty[i]). Source
+	 * and destination arrays may be the same.
+	 */
+	public void transform(double[] x, double[] y, double[] tx, double[] ty, int n) {
+		for (int i = 0; i < n; i++) {
+			final double sx = x[i], sy = y[i];
+			final double w = m20 * sx + m21 * sy + m22;
+			tx[i] = (m00 * sx + m01 * sy + m02) / w;
+			ty[i] = (m10 * sx + m11 * sy + m12) / w;
+		}
+	}
+	
+	public void transform(Point2D src, Point2D dst) {
+		final double sx = src.getX(), sy = src.getY();
+		final double w = m20 * sx + m21 * sy + m22;
+		dst.setLocation((m00 * sx + m01 * sy + m02) / w, (m10 * sx + m11 * sy + m12) / w);
+	}
+
+}
@@ -25,77 +25,117 @@
 
 package org.uweschmidt.wiimote.whiteboard.calibration;
 
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
 
-import org.uweschmidt.wiimote.whiteboard.ds.IRDot;
-import org.uweschmidt.wiimote.whiteboard.ds.Wiimote;
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
 import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
 
+/**
+ * Groups the warped dots of any number of remotes, such that each cluster
+ * contains at most one dot of each remote. Pairs of dots of different remotes
+ * are joined in order of their distance (closest first) if they are closer
+ * than the maximum distance and their clusters don't have a dot of the same
+ * remote yet (union-find with a bit mask of the remotes of each cluster).
+ * <p>
+ * Clusters are ordered by their first dot, i.e. the first cluster is the
+ * first visible dot of the first remote.
+ */
 public class PointClusterer {
-
-	static {
-		if (WWPreferences.WIIMOTES > 2)
-			throw new RuntimeException("Clustering for more than 2 Wiimotes not implemented yet.");
+	
+	private final double maxDistance;
+	
+	// warped dots of the current frame
+	private int[] dots;
+	// union-find on the dots: parent, remotes of the cluster (if root) and cluster number (if root)
+	private int[] parent, mask, cluster;
+	// squared distance (float bits) << 32 | dot a << 16 | dot b
+	private long[] pairs;
+	
+	public PointClusterer(int remotes) {
+		this(remotes, WWPreferences.CLUSTER_DISTANCE);
 	}
-
+	
 	/**
-	 * @return array of clusters (first index = cluster number, second index = dots in cluster)
+	 * @param maxDistance
+	 *            maximum distance of the dots of a cluster in pixels
 	 */
-	public static IRDot[][] cluster(Map<Wiimote, IRDot[]> data) {
-		IRDot[][] cluster = new IRDot[4][];
-
-		// trivial case
-		if (data.size() == 1) {
-			IRDot[] values = data.values().iterator().next();
-			int j = 0;
-			for (int i = 0; i < 4; i++)
-				if (values[i] != null)
-					cluster[j++] = new IRDot[] { values[i] };
-			return cluster;
-		}
-
-		Wiimote[] wiimotes = new Wiimote[data.keySet().size()];
-		data.keySet().toArray(wiimotes);
+	public PointClusterer(int remotes, double maxDistance) {
+		this.maxDistance = maxDistance;
+		allocate(remotes);
+	}
+	
+	private void allocate(int remotes) {
+		if (remotes > Integer.SIZE)
+			throw new IllegalArgumentException("Clustering for more than " + Integer.SIZE + " Wiimotes not supported.");
+		final int n = remotes * IRFrame.SLOTS;
+		dots = new int[n];
+		parent = new int[n];
+		mask = new int[n];
+		cluster = new int[n];
+		pairs = new long[n * (n - 1) / 2];
+	}
 
-		Set<IRDot> used = new HashSet<IRDot>();
-		int c = 0;
+	/**
+	 * Groups the warped dots of all active remotes of the given frame into
+	 * clusters, see {@link IRFrame#getClusterCount()}.
+	 */
+	public void cluster(IRFrame frame) {
+		frame.clearClusters();
+		if (frame.getRemotes() * IRFrame.SLOTS > dots.length)
+			allocate(frame.getRemotes());
 		
-		for (int a = 0; a < 2; a++) {
-			
-			for (int i = 0; i < 4; i++) {				
-				IRDot dot1 = data.get(wiimotes[a])[i];
-				if (dot1 == null || used.contains(dot1))
-					continue;
-				
-				IRDot minDot = null;
-				double minDist = Double.POSITIVE_INFINITY;
-				
-				for (int j = 0; j < 4; j++) {
-					IRDot dot2 = data.get(wiimotes[(a+1)%2])[j];
-					if (dot2 == null || used.contains(dot2))
-						continue;
-					
-					double dist = dot1.distance(dot2);
-					if (dist < minDist) {
-						minDot = dot2;
-						minDist = dist;
-					}
-				}
-				
-				used.add(dot1);
-				if (minDot == null) {
-					cluster[c++] = new IRDot[] { dot1 };
-				} else {
-					cluster[c++] = new IRDot[] { dot1, minDot };
-					used.add(minDot);
+		int n = 0;
+		for (int r = 0; r < frame.getRemotes(); r++) {
+			if (!frame.isActive(r)) continue;
+			for (int i = 0; i < IRFrame.SLOTS; i++) {
+				final int d = IRFrame.index(r, i);
+				if (frame.isWarped(d)) {
+					parent[n] = n;
+					mask[n] = 1 << r;
+					dots[n++] = d;
 				}
-				
 			}
-		}		
-
-		return cluster;
+		}
+		
+		// pairs of dots of different remotes that are close enough
+		final double max = maxDistance * maxDistance;
+		int m = 0;
+		for (int a = 0; a < n; a++) {
+			for (int b = a + 1; b < n; b++) {
+				if (mask[a] == mask[b]) continue;
+				final double dx = frame.getWarpedX(dots[a]) - frame.getWarpedX(dots[b]);
+				final double dy = frame.getWarpedY(dots[a]) - frame.getWarpedY(dots[b]);
+				final double dist = dx * dx + dy * dy;
+				// bits of non-negative floats have the same order as their values
+				if (dist <= max)
+					pairs[m++] = (long) Float.floatToIntBits((float) dist) << 32 | a << 16 | b;
+			}
+		}
+		Arrays.sort(pairs, 0, m);
+		
+		for (int k = 0; k < m; k++) {
+			final int a = find((int) (pairs[k] >>> 16) & 0xFFFF);
+			final int b = find((int) pairs[k] & 0xFFFF);
+			if (a == b || (mask[a] & mask[b]) != 0) continue;
+			// the first dot of a cluster is its root
+			final int root = Math.min(a, b), child = Math.max(a, b);
+			parent[child] = root;
+			mask[root] |= mask[child];
+		}
+		
+		for (int a = 0; a < n; a++) {
+			final int root = find(a);
+			if (root == a)
+				cluster[a] = frame.addCluster();
+			// roots come first, their clusters are assigned already
+			frame.addMember(cluster[root], dots[a]);
+		}
+	}
+	
+	private int find(int a) {
+		while (parent[a] != a)
+			a = parent[a] = parent[parent[a]];
+		return a;
 	}
 
 }
@@ -30,7 +30,6 @@ import java.awt.Graphics2D;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.awt.Image;
-import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.event.KeyAdapter;
@@ -62,8 +61,13 @@ import javax.swing.JPanel;
 import javax.swing.SwingConstants;
 
 import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
+import org.uweschmidt.wiimote.whiteboard.calibration.fusion.FusionStrategy;
 import org.uweschmidt.wiimote.whiteboard.ds.IRDot;
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
 import org.uweschmidt.wiimote.whiteboard.ds.Wiimote;
+import org.uweschmidt.wiimote.whiteboard.metrics.Metrics;
+import org.uweschmidt.wiimote.whiteboard.metrics.Metrics.Stage;
+import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
 import org.uweschmidt.wiimote.whiteboard.util.Util;
 
 public class WiimoteCalibration {
@@ -85,7 +89,8 @@ public class WiimoteCalibration {
 					{CalibrationState.CENTER, CalibrationState.EAST_MIDDLE, CalibrationState.LOWER_RIGHT, CalibrationState.BOTTOM_MIDDLE},
 			};
 
-	public static final GraphicsDevice DEFAULT_SCREEN = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
+	// no screen without display (e.g. benchmarks)
+	public static final GraphicsDevice DEFAULT_SCREEN = GraphicsEnvironment.isHeadless() ? null : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
 
 	public static enum CalibrationEvent {
 		SCREEN_CHANGED, STARTED, FINISHED, ABORTED, LOADED, SAVED;
@@ -135,21 +140,32 @@ public class WiimoteCalibration {
 	private boolean stepChange = false;
 	private boolean checkPoints = false;
 	private Collection<Wiimote> wiimotes;
-	private CalibrationState state = CalibrationState.PENDING;
+	// read by the tracking thread
+	private volatile CalibrationState state = CalibrationState.PENDING;
 
 	// last calibration point for a wiimote, always non-null
 	private Map<Wiimote, Point2D> last = new HashMap<Wiimote, Point2D>();
-	// transformer for wiimote
-	private Map<String, PerspectiveTransform> transformer = new LinkedHashMap<String, PerspectiveTransform>();
 	// all visible calibration points for each wiimote (can be more than 4)
 	private Map<Wiimote, Map<CalibrationState, Point2D>> points = new LinkedHashMap<Wiimote, Map<CalibrationState,Point2D>>();
-	// final 16 value double array (4<->4 mapping) for each wiimote, used to create transformer
-	private Map<String, Double[]> finals = new LinkedHashMap<String, Double[]>();
+	// current calibration, only replaced as a whole (set before state becomes DONE)
+	private volatile CalibrationSnapshot snapshot = CalibrationSnapshot.EMPTY;
 	
+	/*
+	 * only used by the tracking thread
+	 */
+	private final PointClusterer clusterer = new PointClusterer(WWPreferences.WIIMOTES);
+	private final FusionStrategy fusion = WWPreferences.FUSION_STRATEGY;
+	// snapshot the transformations below were taken from
+	private CalibrationSnapshot warping = null;
+	// wiimote and its transformation for each remote of the frame
+	private Wiimote[] warpWiimotes = new Wiimote[0];
+	private Homography[] warpHomographies = new Homography[0];
+	// dots of one remote
+	private final double[] xs = new double[IRFrame.SLOTS], ys = new double[IRFrame.SLOTS];
 
 
 	public WiimoteCalibration() {
-		calibrationFrame = new CalibrationFrame();
+		calibrationFrame = GraphicsEnvironment.isHeadless() ? null : new CalibrationFrame();
 	}
 	
 	public boolean setScreen(GraphicsDevice screen) {
@@ -168,7 +184,7 @@ public class WiimoteCalibration {
 			}
 			
 			state = CalibrationState.PENDING;
-			transformer.clear();
+			snapshot = CalibrationSnapshot.EMPTY;
 			notifyListener(CalibrationEvent.SCREEN_CHANGED);
 			return true;
 		} else {
@@ -269,8 +285,6 @@ public class WiimoteCalibration {
 	public void start(Collection<Wiimote> wiimotes) {
 		last.clear();
 		points.clear();
-		finals.clear();
-//		transformer.clear();
 		calibrationFrame.reset();
 		stepChange = false;
 		sc = 0;
@@ -320,11 +334,15 @@ public class WiimoteCalibration {
 //	}
 	
 	public Map<String, Double[]> getFinals() {
-		return finals;
+		return snapshot.getFinals();
+	}
+	
+	public CalibrationSnapshot getSnapshot() {
+		return snapshot;
 	}
 	
 	public boolean isCalibrated(Wiimote wiimote) {
-		return transformer.containsKey(wiimote.getAddress());
+		return snapshot.isCalibrated(wiimote.getAddress());
 	}
 	
 	public boolean isAnyCalibrated(Collection<Wiimote> wiimotes) {
@@ -345,6 +363,8 @@ public class WiimoteCalibration {
 				
 				if (currentP != null && lastP.distance(currentP) > EPS) {				
 					
+					// dots are reused for subsequent frames
+					currentP = new IRDot((IRDot) currentP);
 					points.get(wiimote).put(state, currentP);
 					last.put(wiimote, currentP);
 					stepChange = true;
@@ -361,10 +381,11 @@ public class WiimoteCalibration {
 				
 				if (checkPoints || current == CalibrationState.REGULAR_END) {
 					checkPoints = true;
-					if (calculateQuadsForWiimotes()) {
+					final Map<String, Double[]> finals = calculateQuadsForWiimotes();
+					if (finals != null) {
 						// OK, calibration finished
+						snapshot = new CalibrationSnapshot(finals);
 						state = CalibrationState.DONE;
-						calculateTransformation();
 						if (screen.getFullScreenWindow() == calibrationFrame)
 							screen.setFullScreenWindow(null);
 						calibrationFrame.setVisible(false);
@@ -404,7 +425,12 @@ public class WiimoteCalibration {
 		return true;
 	}
 	
-	private boolean calculateQuadsForWiimotes() {
+	/**
+	 * @return final calibration points for each wiimote, null if the points
+	 *         don't cover the screen (yet)
+	 */
+	private Map<String, Double[]> calculateQuadsForWiimotes() {
+		final Map<String, Double[]> finals = new LinkedHashMap<String, Double[]>();
 		boolean success = true;
 		Set<CalibrationState> check = new HashSet<CalibrationState>();
 		
@@ -434,63 +460,75 @@ public class WiimoteCalibration {
 			success = success && ok;
 		}
 		// check also if the whole screen is covered
-		return success && check.containsAll(Arrays.asList(VALID_STATES[0]));		
-	}
-	
-	private void calculateTransformation() {		
-		transformer.clear();
-		for (String address : finals.keySet()) {
-			Double[] d = finals.get(address);
-			transformer.put(address, PerspectiveTransform.getQuadToQuad(d[0], d[1], d[2], d[3], d[4], d[5], d[6], d[7], d[8], d[9], d[10], d[11], d[12], d[13], d[14], d[15]));
-		}
+		return success && check.containsAll(Arrays.asList(VALID_STATES[0])) ? finals : null;
 	}
 	
 	public Map<String, PerspectiveTransform> getTransformer() {
-		return transformer;
+		return snapshot.getTransformer();
 	}
 	
 	public IRDot warp(int i, Wiimote wiimote, Map<Wiimote, IRDot[]> data) {
-		final PerspectiveTransform transform = transformer.get(wiimote.getAddress());
-		if (transform == null || data.get(wiimote)[i] == null) return null;
+		final Homography h = snapshot.getHomography(wiimote.getAddress());
+		final IRDot dot = data.get(wiimote)[i];
+		if (h == null || dot == null) return null;
 		else {
-			return (IRDot) transform.transform(data.get(wiimote)[i], new IRDot(data.get(wiimote)[i]));
+			final IRDot warped = new IRDot(dot);
+			h.transform(dot, warped);
+			return warped;
 		}
 	}
 	
-	private Map<Wiimote, IRDot[]> warpIndividually(Map<Wiimote, IRDot[]> data) {
-		Map<Wiimote, IRDot[]> warped = new LinkedHashMap<Wiimote, IRDot[]>();
-		IRDot[] p;
-		for (Wiimote wiimote : data.keySet()) {
-			warped.put(wiimote, p = new IRDot[4]);
-			for (int i = 0; i < 4; i++) {
-				p[i] = warp(i, wiimote, data);
-			}
+	/**
+	 * Warps the dots of all active remotes of the given frame to screen
+	 * coordinates, clusters them and fuses the dots of each cluster, see
+	 * {@link IRFrame#getPointX(int)}.
+	 */
+	public void warp(IRFrame frame) {
+		frame.clearClusters();
+		if (!isDone()) {
+			System.err.println("Not calibrated.");
+			return;
 		}
-		return warped;
-	}
-	
-	public Point[] warp(Map<Wiimote, IRDot[]> data) {
-		Point[] warped = new Point[4];
-		if (isDone() && isAnyCalibrated(data.keySet())) {
-			IRDot[][] cluster = PointClusterer.cluster(warpIndividually(data));
-			
-			for (int i = 0; i < cluster.length; i++) {
-				if (cluster[i] == null) break;
-				double x = 0, y = 0;
-				int c = 0;
-				// TODO strategies: averaging, priority (brighter dot), ?
-				for (IRDot p : cluster[i]) {
-					x += p.getX();
-					y += p.getY();
-					c++;
-					break;
-				}
-				warped[i] = new Point((int) Math.round(x / c), (int) Math.round(y / c));
+		
+		long t = System.nanoTime();
+		final CalibrationSnapshot s = snapshot;
+		if (s != warping || warpWiimotes.length < frame.getRemotes()) {
+			// new calibration, look up the transformations again
+			warping = s;
+			warpWiimotes = new Wiimote[frame.getRemotes()];
+			warpHomographies = new Homography[frame.getRemotes()];
+			fusion.reset();
+		}
+		for (int r = 0; r < frame.getRemotes(); r++) {
+			final Wiimote wiimote = frame.getWiimote(r);
+			if (wiimote != warpWiimotes[r]) {
+				warpWiimotes[r] = wiimote;
+				warpHomographies[r] = wiimote != null ? s.getHomography(wiimote.getAddress()) : null;
+			}
+			final Homography h = frame.isActive(r) ? warpHomographies[r] : null;
+			if (h == null) {
+				for (int i = 0; i < IRFrame.SLOTS; i++)
+					frame.clearWarped(IRFrame.index(r, i));
+				continue;
+			}
+			for (int i = 0; i < IRFrame.SLOTS; i++) {
+				xs[i] = frame.getX(IRFrame.index(r, i));
+				ys[i] = frame.getY(IRFrame.index(r, i));
+			}
+			h.transform(xs, ys, xs, ys, IRFrame.SLOTS);
+			for (int i = 0; i < IRFrame.SLOTS; i++) {
+				final int d = IRFrame.index(r, i);
+				if (frame.isVisible(d))
+					frame.setWarped(d, xs[i], ys[i]);
+				else
+					frame.clearWarped(d);
 			}
-		} else {
-			System.err.println("Not calibrated.");
 		}
-		return warped;
+		t = Metrics.record(Stage.WARP, t);
+		
+		clusterer.cluster(frame);
+		fusion.fuse(frame);
+		Metrics.record(Stage.CLUSTER, t);
 	}
 
 	
@@ -504,6 +542,8 @@ public class WiimoteCalibration {
 	public boolean load(InputStream is) throws IOException {
 		try {
 			BufferedReader in = new BufferedReader(new InputStreamReader(is));
+			// only replaces the current calibration if the whole file is valid
+			final Map<String, Double[]> finals = new LinkedHashMap<String, Double[]>();
 			String address = null;
 
 			while ((address = in.readLine()) != null) {
@@ -518,7 +558,7 @@ public class WiimoteCalibration {
 				}
 			}
 			
-			calculateTransformation();
+			snapshot = new CalibrationSnapshot(finals);
 			state = CalibrationState.DONE;
 			notifyListener(CalibrationEvent.LOADED);
 			return true;
@@ -531,6 +571,7 @@ public class WiimoteCalibration {
 
 	public void save(OutputStream os) throws IOException {
 		PrintStream out = new PrintStream(os);
+		final Map<String, Double[]> finals = snapshot.getFinals();
 		
 		for (String address : finals.keySet()) {
 			out.print(address);
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.calibration.fusion;
+
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+
+/**
+ * Weights dots by their distance to the centre of the camera image: lens
+ * distortion (which the calibration doesn't model) grows towards the edges,
+ * so dots near the centre of a camera are more reliable.
+ */
+public class CenterWeightedFusion extends WeightedFusion {
+	
+	// variance at the corners of the image relative to the centre
+	private static final double EDGE_VARIANCE = 5;
+	
+	@Override
+	protected double weight(IRFrame frame, int d) {
+		final double dx = frame.getX(d) - .5, dy = frame.getY(d) - .5;
+		// squared distance 0..0.5
+		return 1 / (1 + (EDGE_VARIANCE - 1) * 2 * (dx * dx + dy * dy));
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.calibration.fusion;
+
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+
+/**
+ * Weights the dots of each Wiimote by the inverse of its calibration
+ * residual. A calibration with four points fits exactly, so the residual is
+ * measured during operation as the exponentially smoothed squared distance of
+ * the Wiimote's dots to the fused positions of the other dots of their
+ * clusters (leaving the dot itself out, otherwise a Wiimote with a high
+ * weight would pull the positions towards itself and gain even more weight).
+ */
+public class ResidualWeightedFusion extends WeightedFusion {
+	
+	// residual of Wiimotes without measurements (px^2)
+	private static final double PRIOR = 25;
+	// noise of a perfectly calibrated Wiimote (px^2)
+	private static final double NOISE = 1;
+	private static final double ALPHA = .01;
+	
+	private double[] residual = new double[0];
+	
+	@Override
+	public void fuse(IRFrame frame) {
+		if (residual.length != frame.getRemotes())
+			reset(frame.getRemotes());
+		super.fuse(frame);
+		
+		for (int c = 0; c < frame.getClusterCount(); c++) {
+			final int n = frame.getMemberCount(c);
+			if (n < 2) continue;
+			double x = 0, y = 0, sum = 0;
+			for (int k = 0; k < n; k++) {
+				final int d = frame.getMember(c, k);
+				final double w = weight(frame, d);
+				x += w * frame.getWarpedX(d);
+				y += w * frame.getWarpedY(d);
+				sum += w;
+			}
+			for (int k = 0; k < n; k++) {
+				final int d = frame.getMember(c, k);
+				final double w = weight(frame, d);
+				final double dx = frame.getWarpedX(d) - (x - w * frame.getWarpedX(d)) / (sum - w);
+				final double dy = frame.getWarpedY(d) - (y - w * frame.getWarpedY(d)) / (sum - w);
+				final int r = d / IRFrame.SLOTS;
+				residual[r] += ALPHA * (dx * dx + dy * dy - residual[r]);
+			}
+		}
+	}
+	
+	@Override
+	public void reset() {
+		reset(residual.length);
+	}
+	
+	private void reset(int remotes) {
+		residual = new double[remotes];
+		for (int r = 0; r < remotes; r++)
+			residual[r] = PRIOR;
+	}
+	
+	@Override
+	protected double weight(IRFrame frame, int d) {
+		return 1 / (NOISE + residual[d / IRFrame.SLOTS]);
+	}
+	
+	/**
+	 * @return current residual of the given remote in square pixels
+	 */
+	public double getResidual(int remote) {
+		return residual[remote];
+	}
+
+}
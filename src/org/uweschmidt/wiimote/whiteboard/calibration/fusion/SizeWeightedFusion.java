@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.calibration.fusion;
+
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+
+/**
+ * Weights dots by their size: the camera computes the position of a dot from
+ * more pixels if it's bigger, so the variance of the position is roughly
+ * inversely proportional to the size.
+ * <p>
+ * Needs dot sizes, which the Wiimotes only report in the extended IR mode:
+ * without them (negative sizes) all dots weigh the same.
+ */
+public class SizeWeightedFusion extends WeightedFusion {
+	
+	// smallest size reported by the camera, for dots without size
+	private static final double MIN_SIZE = 1 / 15.0;
+	
+	@Override
+	protected double weight(IRFrame frame, int d) {
+		return Math.max(MIN_SIZE, frame.getSize(d));
+	}
+
+}
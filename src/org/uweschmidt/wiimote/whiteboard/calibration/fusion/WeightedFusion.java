@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.calibration.fusion;
+
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+
+/**
+ * Weighted average of the dots of each cluster. With weights proportional to
+ * the inverse variance of the dot positions, the variance of the average is
+ * lower than the one of any single dot.
+ */
+public abstract class WeightedFusion implements FusionStrategy {
+	
+	public void fuse(IRFrame frame) {
+		for (int c = 0; c < frame.getClusterCount(); c++) {
+			double x = 0, y = 0, sum = 0;
+			for (int k = 0; k < frame.getMemberCount(c); k++) {
+				final int d = frame.getMember(c, k);
+				final double w = weight(frame, d);
+				x += w * frame.getWarpedX(d);
+				y += w * frame.getWarpedY(d);
+				sum += w;
+			}
+			frame.setPoint(c, x / sum, y / sum);
+		}
+	}
+	
+	public void reset() {
+	}
+	
+	/**
+	 * @return weight (greater than 0) of the given dot
+	 */
+	protected abstract double weight(IRFrame frame, int d);
+
+}
@@ -56,6 +56,11 @@ public class IRDot extends Point2D.Double {
 	public double getSize() {
 		return size;
 	}
+
+	public void set(double x, double y, double size) {
+		setLocation(x, y);
+		this.size = size;
+	}
 	
 	public int getId() {
 		return id;
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.ds;
+
+import wiiremotej.IRLight;
+
+/**
+ * Reusable container for one frame of IR data of all Wiimotes, from the raw
+ * camera coordinates over the warped screen coordinates to the clustered
+ * points. Everything is kept in pre-sized primitive arrays, so a frame can be
+ * processed without creating any objects.
+ * <p>
+ * Dots are addressed by index, see {@link #index(int, int)}.
+ */
+public class IRFrame {
+
+	public static final int SLOTS = 4;
+
+	private final int remotes;
+	private final Wiimote[] wiimotes;
+	// remotes whose dots are used for this frame
+	private final boolean[] active;
+	// FrameClock.now() (nanoseconds, manual during accelerated replays) of the latest report of each remote
+	private final long[] time;
+
+	// raw camera coordinates (0..1) and dot sizes
+	private final double[] x, y, size;
+	private final boolean[] visible;
+
+	// warped screen coordinates
+	private final double[] wx, wy;
+	private final boolean[] warped;
+
+	// clusters of warped dots (dot indices, at most one dot per remote and cluster)
+	private final int[] members;
+	private final int[] memberCount;
+	private int clusters = 0;
+	// screen coordinates of each cluster
+	private final double[] px, py;
+
+	// views on the raw data for WiimoteDataListeners, updated in place
+	private final IRDot[][] dots;
+	private final IRDot[][] lights;
+
+	public IRFrame(int remotes) {
+		this.remotes = remotes;
+		final int n = remotes * SLOTS;
+		wiimotes = new Wiimote[remotes];
+		active = new boolean[remotes];
+		time = new long[remotes];
+		x = new double[n];
+		y = new double[n];
+		size = new double[n];
+		visible = new boolean[n];
+		wx = new double[n];
+		wy = new double[n];
+		warped = new boolean[n];
+		// every dot might be a cluster of its own
+		members = new int[n * remotes];
+		memberCount = new int[n];
+		px = new double[n];
+		py = new double[n];
+		dots = new IRDot[remotes][SLOTS];
+		lights = new IRDot[remotes][SLOTS];
+		for (int r = 0; r < remotes; r++)
+			for (int i = 0; i < SLOTS; i++)
+				dots[r][i] = new IRDot(i, 0, 0, 0);
+	}
+
+	public static int index(int remote, int slot) {
+		return remote * SLOTS + slot;
+	}
+
+	public int getRemotes() {
+		return remotes;
+	}
+
+	/*
+	 * REMOTES
+	 */
+
+	public Wiimote getWiimote(int remote) {
+		return wiimotes[remote];
+	}
+
+	public void setWiimote(int remote, Wiimote wiimote) {
+		wiimotes[remote] = wiimote;
+	}
+
+	public boolean isActive(int remote) {
+		return active[remote];
+	}
+
+	public void setActive(int remote, boolean active) {
+		this.active[remote] = active;
+	}
+
+	public long getTime(int remote) {
+		return time[remote];
+	}
+
+	public void setTime(int remote, long time) {
+		this.time[remote] = time;
+	}
+
+	/*
+	 * RAW DATA
+	 */
+
+	public void setLights(int remote, IRLight[] lights) {
+		for (int i = 0; i < SLOTS; i++) {
+			final IRLight l = lights != null && i < lights.length ? lights[i] : null;
+			if (l != null)
+				setDot(index(remote, i), l.getX(), l.getY(), l.getSize());
+			else
+				clearDot(index(remote, i));
+		}
+	}
+
+	public void setDot(int d, double x, double y, double size) {
+		this.x[d] = x;
+		this.y[d] = y;
+		this.size[d] = size;
+		visible[d] = true;
+		final IRDot dot = dots[d / SLOTS][d % SLOTS];
+		dot.set(x, y, size);
+		lights[d / SLOTS][d % SLOTS] = dot;
+	}
+
+	public void clearDot(int d) {
+		visible[d] = false;
+		lights[d / SLOTS][d % SLOTS] = null;
+	}
+
+	public boolean isVisible(int d) {
+		return visible[d];
+	}
+
+	public double getX(int d) {
+		return x[d];
+	}
+
+	public double getY(int d) {
+		return y[d];
+	}
+
+	public double getSize(int d) {
+		return size[d];
+	}
+
+	/**
+	 * @return the visible dots of the given remote (null if not visible); the
+	 *         array and its dots are reused for subsequent frames
+	 */
+	public IRDot[] getLights(int remote) {
+		return lights[remote];
+	}
+
+	/*
+	 * WARPED DATA
+	 */
+
+	public void setWarped(int d, double x, double y) {
+		wx[d] = x;
+		wy[d] = y;
+		warped[d] = true;
+	}
+
+	public void clearWarped(int d) {
+		warped[d] = false;
+	}
+
+	public boolean isWarped(int d) {
+		return warped[d];
+	}
+
+	public double getWarpedX(int d) {
+		return wx[d];
+	}
+
+	public double getWarpedY(int d) {
+		return wy[d];
+	}
+
+	/*
+	 * CLUSTERS
+	 */
+
+	public void clearClusters() {
+		clusters = 0;
+	}
+
+	/**
+	 * @return number of the new (empty) cluster
+	 */
+	public int addCluster() {
+		memberCount[clusters] = 0;
+		return clusters++;
+	}
+
+	public void addMember(int cluster, int d) {
+		members[cluster * remotes + memberCount[cluster]++] = d;
+	}
+
+	public int getClusterCount() {
+		return clusters;
+	}
+
+	public int getMemberCount(int cluster) {
+		return memberCount[cluster];
+	}
+
+	public int getMember(int cluster, int k) {
+		return members[cluster * remotes + k];
+	}
+
+	public void setPoint(int cluster, double x, double y) {
+		px[cluster] = x;
+		py[cluster] = y;
+	}
+
+	public double getPointX(int cluster) {
+		return px[cluster];
+	}
+
+	public double getPointY(int cluster) {
+		return py[cluster];
+	}
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.ds;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import wiiremotej.IRLight;
+
+/**
+ * Bounded, lock-free ring buffer for raw IR reports with many producers (the
+ * Bluetooth threads) and a single consumer. Producers never wait for the
+ * consumer: if it falls behind, the oldest reports are overwritten (latest
+ * wins). Reports are copied into pre-allocated storage, so no objects are
+ * created per report.
+ */
+public class IRReportRing {
+
+	// record layout: remote, time, then x, y, size of each slot (x is NaN if not visible)
+	private static final int REMOTE = 0, TIME = 1, DOTS = 2;
+	private static final int RECORD = DOTS + 3 * IRFrame.SLOTS;
+	private static final long WRITING = Long.MIN_VALUE;
+
+	private final int capacity, mask;
+	// sequence number of the report in each slot, WRITING while it's being written
+	private final AtomicLongArray seq;
+	private final AtomicLongArray data;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong overwritten = new AtomicLong();
+	private volatile Thread waiter = null;
+
+	// consumer only
+	private long tail = 0;
+	private final long[] record = new long[RECORD];
+
+	/**
+	 * @param capacity number of reports, rounded up to a power of two
+	 */
+	public IRReportRing(int capacity) {
+		this.capacity = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+		mask = this.capacity - 1;
+		seq = new AtomicLongArray(this.capacity);
+		data = new AtomicLongArray(this.capacity * RECORD);
+		for (int i = 0; i < this.capacity; i++)
+			seq.set(i, i - this.capacity);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/*
+	 * PRODUCER
+	 */
+
+	public void put(int remote, long time, IRLight[] lights) {
+		final long n = head.getAndIncrement();
+		final int s = (int) n & mask;
+		final int o = s * RECORD;
+		if (!claim(s, n)) return;
+
+		data.lazySet(o + REMOTE, remote);
+		data.lazySet(o + TIME, time);
+		for (int i = 0; i < IRFrame.SLOTS; i++) {
+			final IRLight l = lights != null && i < lights.length ? lights[i] : null;
+			final int d = o + DOTS + 3 * i;
+			data.lazySet(d, Double.doubleToRawLongBits(l != null ? l.getX() : Double.NaN));
+			data.lazySet(d + 1, Double.doubleToRawLongBits(l != null ? l.getY() : 0));
+			data.lazySet(d + 2, Double.doubleToRawLongBits(l != null ? l.getSize() : 0));
+		}
+
+		publish(s, n);
+	}
+
+	/**
+	 * @param x
+	 *            NaN if the dot of a slot isn't visible
+	 */
+	public void put(int remote, long time, double[] x, double[] y, double[] size) {
+		final long n = head.getAndIncrement();
+		final int s = (int) n & mask;
+		final int o = s * RECORD;
+		if (!claim(s, n)) return;
+
+		data.lazySet(o + REMOTE, remote);
+		data.lazySet(o + TIME, time);
+		for (int i = 0; i < IRFrame.SLOTS; i++) {
+			final int d = o + DOTS + 3 * i;
+			data.lazySet(d, Double.doubleToRawLongBits(x[i]));
+			data.lazySet(d + 1, Double.doubleToRawLongBits(y[i]));
+			data.lazySet(d + 2, Double.doubleToRawLongBits(size[i]));
+		}
+
+		publish(s, n);
+	}
+
+	private boolean claim(int s, long n) {
+		long prev;
+		while (true) {
+			prev = seq.get(s);
+			if (prev > n) {
+				// a newer report already took this slot (this thread was suspended for a whole lap),
+				// counted as overwritten by the consumer
+				return false;
+			}
+			// another producer is still writing to this slot one lap earlier (hardly ever happens)
+			if (prev != WRITING && seq.compareAndSet(s, prev, WRITING))
+				return true;
+			Thread.yield();
+		}
+	}
+
+	private void publish(int s, long n) {
+		seq.set(s, n);
+		final Thread t = waiter;
+		if (t != null)
+			LockSupport.unpark(t);
+	}
+
+	/*
+	 * CONSUMER
+	 */
+
+	/**
+	 * Copies the next report into the given frame.
+	 *
+	 * @return the remote of the report, or -1 if no report is available
+	 */
+	public int poll(IRFrame frame) {
+		while (true) {
+			final long h = head.get();
+			if (tail >= h)
+				return -1;
+			if (h - tail > capacity) {
+				// lapped by the producers
+				overwritten.addAndGet(h - capacity - tail);
+				tail = h - capacity;
+			}
+
+			final int s = (int) tail & mask;
+			final long n = seq.get(s);
+			if (n == WRITING || n < tail) {
+				// claimed, but not yet published
+				return -1;
+			}
+			if (n > tail) {
+				overwritten.incrementAndGet();
+				tail++;
+				continue;
+			}
+
+			final int o = s * RECORD;
+			for (int i = 0; i < RECORD; i++)
+				record[i] = data.get(o + i);
+			tail++;
+			if (seq.get(s) != n) {
+				// overwritten while copying
+				overwritten.incrementAndGet();
+				continue;
+			}
+
+			final int remote = (int) record[REMOTE];
+			for (int i = 0; i < IRFrame.SLOTS; i++) {
+				final int d = DOTS + 3 * i;
+				final double x = Double.longBitsToDouble(record[d]);
+				if (Double.isNaN(x))
+					frame.clearDot(IRFrame.index(remote, i));
+				else
+					frame.setDot(IRFrame.index(remote, i), x, Double.longBitsToDouble(record[d + 1]), Double.longBitsToDouble(record[d + 2]));
+			}
+			frame.setTime(remote, record[TIME]);
+			return remote;
+		}
+	}
+
+	/**
+	 * Blocks the consumer until new reports might be available.
+	 */
+	public void await() {
+		waiter = Thread.currentThread();
+		final long h = head.get();
+		if (h == tail)
+			LockSupport.park(this);
+		else
+			// producer is about to publish
+			Thread.yield();
+		waiter = null;
+	}
+
+	/**
+	 * @return number of reports that were replaced by newer ones before the
+	 *         consumer could take them
+	 */
+	public long getOverwritten() {
+		return overwritten.get();
+	}
+
+}
@@ -28,16 +28,14 @@ package org.uweschmidt.wiimote.whiteboard.gui;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Point;
 import java.awt.RenderingHints;
 import java.awt.SystemColor;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.awt.geom.Point2D;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import javax.swing.BorderFactory;
 import javax.swing.JDialog;
@@ -78,8 +76,6 @@ public class CalibrationInfoWindow extends JDialog implements CalibrationEventLi
 		}
 	}
 	
-	private static final long REPAINT_FREQ = 1000 / 25;
-	
 	private static final Color CALIBRATED_COLOR = SystemColor.textHighlight;
 	private static final Color TRACKING_COLOR = SystemColor.text;
 	
@@ -99,7 +95,7 @@ public class CalibrationInfoWindow extends JDialog implements CalibrationEventLi
 		this.calibration = calibration;
 		this.dh = dh;
 		calibration.addCalibrationEventListener(this);
-		dh.addWiimoteDataListener(this);
+		dh.addWiimoteDataListener(this, true);
 		setLayout(new MigLayout("hidemode 3"));
 		// info labels
 		final JLabel taLabel = Util.newComponent(JLabel.class, "trackingAreaLabel");
@@ -150,16 +146,6 @@ public class CalibrationInfoWindow extends JDialog implements CalibrationEventLi
 		Util.placeDialogWindow(this, getWidth(), getHeight());
 //		setResizable(false);
 //		setVisible(true);
-		new Timer(true).schedule(new UpdateTask(), 0, REPAINT_FREQ);
-	}
-	
-	private class UpdateTask extends TimerTask {
-		@Override
-		public void run() {
-			if (isVisible()) {
-				repaintPanels();
-			}
-		}
 	}
 	
 	private void repaintPanels() {
@@ -205,9 +191,10 @@ public class CalibrationInfoWindow extends JDialog implements CalibrationEventLi
 	public void batteryLevel(Wiimote wiimote, double level) {}
 	public void irLights(Wiimote wiimote, IRDot[] lights) {
 		ww[wiimote.getId()-1].lights = lights;
-//		ww[wiimote.getId()-1].panel.repaint();
+		if (isVisible())
+			RenderScheduler.request(ww[wiimote.getId()-1].panel);
 	}
-	public void irWarped(Map<Wiimote, IRDot[]> data, Point[] warped) {}
+	public void irWarped(Map<Wiimote, IRDot[]> data, Point2D[] warped) {}
 	public void wiimoteConnected(Wiimote wiimote) {
 		update();
 		updateCalibrated();
@@ -25,17 +25,14 @@
 
 package org.uweschmidt.wiimote.whiteboard.gui;
 
-import java.awt.Point;
 import java.awt.SystemColor;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.awt.geom.Point2D;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import javax.swing.BorderFactory;
 import javax.swing.JDialog;
-import javax.swing.JPanel;
 
 import net.miginfocom.swing.MigLayout;
 
@@ -52,20 +49,17 @@ import org.uweschmidt.wiimote.whiteboard.util.Util;
 @SuppressWarnings("serial")
 public class CameraMonitor extends JDialog implements WiimoteDataListener {
 
-	private static final long REPAINT_FREQ = 1000 / 25;
-
-	private JPanel canvas;
+	private LightCanvas canvas;
 	private IRDot[][] lights = new IRDot[WWPreferences.WIIMOTES+1][4];
-	private LightLabel[][] labels = new LightLabel[WWPreferences.WIIMOTES+1][4];
 
 	public CameraMonitor(WiimoteDataHandler dh) {
 		super(Application.getInstance(WiimoteWhiteboard.class).getMainFrame(), Util.getResourceMap(CameraMonitor.class).getString("monitor.Action.text"));
 		getRootPane().putClientProperty("Window.style", "small");
 		setLayout(new MigLayout());
 		
-		dh.addWiimoteDataListener(this);
+		dh.addWiimoteDataListener(this, true);
 
-		canvas = new JPanel(null, true);
+		canvas = new LightCanvas(lights);
 		canvas.setOpaque(true);
 		canvas.setBorder(BorderFactory.createLineBorder(SystemColor.inactiveCaptionBorder));
 		add(canvas, "w 50sp, h 50sp, grow, push");
@@ -81,8 +75,6 @@ public class CameraMonitor extends JDialog implements WiimoteDataListener {
 
 		pack();
 		setLocationRelativeTo(null);
-
-		new Timer(true).schedule(new UpdateTask(), 0, REPAINT_FREQ);
 	}
 
 	@Action
@@ -90,39 +82,30 @@ public class CameraMonitor extends JDialog implements WiimoteDataListener {
 		setVisible(true);
 	}
 
-	private class UpdateTask extends TimerTask {
-		@Override
-		public void run() {
-			if (isVisible()) {
-				for (int i = 1; i <= WWPreferences.WIIMOTES; i++)
-					for (int j = 0; j < 4; j++) {
-						if (labels[i][j] != null)
-							labels[i][j].update();
-					}
-			}
-		}
-	}
-
 	public void irLights(Wiimote wiimote, IRDot[] lights) {
-		this.lights[wiimote.getId()] = lights;
+		if (isVisible()) {
+			// the given dots are reused once this call returns, the canvas
+			// gets copies that aren't changed while they're painted
+			final IRDot[] copy = new IRDot[lights.length];
+			for (int i = 0; i < lights.length; i++)
+				copy[i] = lights[i] == null ? null : new IRDot(lights[i]);
+			this.lights[wiimote.getId()] = copy;
+			RenderScheduler.request(canvas);
+		}
 	}
 	
-	public void irWarped(Map<Wiimote, IRDot[]> data, Point[] warped) {
+	public void irWarped(Map<Wiimote, IRDot[]> data, Point2D[] warped) {
 	}
 
 	public void batteryLevel(Wiimote wiimote, double level) {
 	}
 
 	public void wiimoteConnected(Wiimote wiimote) {
-		for (int i = 0; i < 4; i++)
-			canvas.add(labels[wiimote.getId()][i] = new LightLabel(canvas, lights, wiimote.getId(), i + 1));
+		canvas.setRow(wiimote.getId(), WiimoteIcon.COLORS[wiimote.getId() - 1]);
 	}
 
 	public void wiimoteDisconnected(Wiimote wiimote) {
-		for (int i = 0; i < 4; i++) {
-			canvas.remove(labels[wiimote.getId()][i]);
-			labels[wiimote.getId()][i] = null;
-		}
+		canvas.setRow(wiimote.getId(), null);
 	}
 
 }
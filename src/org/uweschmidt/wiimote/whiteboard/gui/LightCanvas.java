@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.gui;
+
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Point2D;
+
+import javax.swing.JPanel;
+
+import org.uweschmidt.wiimote.whiteboard.ds.IRDot;
+
+/**
+ * Paints rows of numbered lights (normalized coordinates, origin at the bottom
+ * left), e.g. the IR dots of each Wiimote. Lights of the first rows are
+ * painted on top.
+ */
+@SuppressWarnings("serial")
+public class LightCanvas extends JPanel {
+	
+	private static final int RADIUS = 10;
+	private static final String[] NUMBERS = { "1", "2", "3", "4" };
+	
+	private final Point2D[][] lights;
+	// color of each row, null if the row isn't shown
+	private final Color[] colors;
+
+	/**
+	 * @param lights
+	 *            rows of lights, updated by the caller
+	 */
+	public LightCanvas(Point2D[][] lights) {
+		super(null, true);
+		this.lights = lights;
+		this.colors = new Color[lights.length];
+	}
+	
+	/**
+	 * @param color
+	 *            null to hide the row
+	 */
+	public void setRow(int row, Color color) {
+		colors[row] = color;
+		RenderScheduler.request(this);
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		Graphics2D g2d = (Graphics2D) g;
+		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		final FontMetrics fm = g2d.getFontMetrics();
+		final int w = getWidth(), h = getHeight();
+		for (int row = lights.length - 1; row >= 0; row--) {
+			final Point2D[] ls = lights[row];
+			if (colors[row] == null || ls == null) continue;
+			for (int i = Math.min(ls.length, NUMBERS.length) - 1; i >= 0; i--) {
+				final Point2D l = ls[i];
+				if (l == null) continue;
+				final int x = (int) Math.round(l.getX() * w) - RADIUS;
+				final int y = h - (int) Math.round(l.getY() * h) - RADIUS;
+				g2d.setColor(colors[row]);
+				g2d.fillOval(x + 1, y + 1, RADIUS * 2 - 2, RADIUS * 2 - 2);
+				g2d.setColor(Color.black);
+				g2d.drawOval(x + 1, y + 1, RADIUS * 2 - 2, RADIUS * 2 - 2);
+
+				// XXX explain cyan oval for size
+				if (l instanceof IRDot) {
+					g2d.setColor(Color.cyan);
+					final int d = (int) Math.round(RADIUS * ((IRDot) l).getSize() * 10);
+					g2d.fillOval(x + RADIUS - d / 2, y + RADIUS - d / 2, d, d);
+				}
+				
+				g2d.setColor(Color.black);
+				g2d.drawString(NUMBERS[i], x + RADIUS - fm.stringWidth(NUMBERS[i]) / 2, y + RADIUS + (fm.getAscent() - fm.getDescent()) / 2);
+			}
+		}
+	}
+
+}
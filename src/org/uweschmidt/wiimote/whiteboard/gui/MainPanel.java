@@ -28,12 +28,12 @@ package org.uweschmidt.wiimote.whiteboard.gui;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
-import java.awt.Point;
 import java.awt.SystemColor;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowFocusListener;
+import java.awt.geom.Point2D;
 import java.util.Map;
 import java.util.logging.Level;
 
@@ -97,7 +97,7 @@ public class MainPanel extends JPanel implements WiimoteDataListener, Calibratio
 		this.dh = dh;
 		this.calibration = calibration;
 		
-		dh.addWiimoteDataListener(this);
+		dh.addWiimoteDataListener(this, true);
 		calibration.addCalibrationEventListener(this);
 		
 		createComponents();
@@ -147,7 +147,7 @@ public class MainPanel extends JPanel implements WiimoteDataListener, Calibratio
 		}
 	}
 	
-	public void irWarped(Map<Wiimote, IRDot[]> data, Point[] warped) {
+	public void irWarped(Map<Wiimote, IRDot[]> data, Point2D[] warped) {
 	}	
 	
 	public void wiimoteConnected(Wiimote wiimote) {
@@ -40,7 +40,7 @@ import org.uweschmidt.wiimote.whiteboard.util.Util;
 @SuppressWarnings("serial")
 public class MenuBar extends JMenuBar {
 	
-	public MenuBar(PreferencesWindow pf, AboutWindow af, HelpHandler hh, LogWindow lw) {
+	public MenuBar(PreferencesWindow pf, AboutWindow af, HelpHandler hh, LogWindow lw, MetricsWindow mw) {
 		JMenu menu;
 		JMenuItem item;
 		
@@ -62,6 +62,7 @@ public class MenuBar extends JMenuBar {
 			menu.add(new JMenuItem(Util.getAction(af, "about")));
 		
 		menu.add(new JMenuItem(Util.getAction(lw, "log")));
+		menu.add(new JMenuItem(Util.getAction(mw, "metrics")));
 		
 		menu.addSeparator();
 		
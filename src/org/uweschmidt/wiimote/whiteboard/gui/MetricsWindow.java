@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.gui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.util.Formatter;
+import java.util.Locale;
+
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+
+import net.miginfocom.swing.MigLayout;
+
+import org.jdesktop.application.Action;
+import org.jdesktop.application.Application;
+import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
+import org.uweschmidt.wiimote.whiteboard.metrics.LatencyHistogram;
+import org.uweschmidt.wiimote.whiteboard.metrics.Metrics;
+import org.uweschmidt.wiimote.whiteboard.metrics.Metrics.Stage;
+import org.uweschmidt.wiimote.whiteboard.util.Util;
+
+@SuppressWarnings("serial")
+public class MetricsWindow extends JDialog {
+	
+	private static final int UPDATE_INTERVAL = 1000;
+	
+	private JTextArea metrics;
+	private final Timer timer;
+	
+	public MetricsWindow() {
+		super(Application.getInstance(WiimoteWhiteboard.class).getMainFrame(), WiimoteWhiteboard.getProperty("id") + " " + Util.getResourceMap(MetricsWindow.class).getString("metrics.Action.text"));
+		getRootPane().putClientProperty("Window.style", "small");
+		setLayout(new MigLayout());
+		
+		metrics = Util.newComponent(JTextArea.class, "metrics");
+		add(metrics, "grow, push, wrap");
+		
+		final JButton resetButton = Util.newComponent(JButton.class, "resetMetricsButton");
+		resetButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				Metrics.getMetrics().reset();
+				update();
+			}
+		});
+		add(resetButton, "right");
+		
+		metrics.addKeyListener(new KeyAdapter() {
+			@Override
+			public void keyPressed(KeyEvent e) {
+				if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+					setVisible(false);
+				}
+			}
+		});
+		
+		timer = new Timer(UPDATE_INTERVAL, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				if (isVisible())
+					update();
+				else
+					timer.stop();
+			}
+		});
+		
+		Util.getResourceMap(MetricsWindow.class).injectComponents(this);
+		update();
+		pack();
+		Util.placeDialogWindow(this, getWidth(), getHeight());
+	}
+	
+	@Action
+	public void metrics() {
+		if (!isVisible()) {
+			update();
+			timer.start();
+		}
+		setVisible(!isVisible());
+	}
+	
+	private void update() {
+		final Formatter f = new Formatter(Locale.ENGLISH);
+		f.format("%-16s %10s %10s %10s %10s%n", "Latency [us]", "count", "p50", "p99", "max");
+		for (Stage s : Stage.values()) {
+			final LatencyHistogram h = s.getHistogram();
+			f.format("%-16s %10d %10.1f %10.1f %10.1f%n", s, h.getCount(), h.getMedian() / 1e3, h.get99thPercentile() / 1e3, h.getMax() / 1e3);
+		}
+		f.format("%n%-16s %10.1f%n", "Frames/s", Metrics.getMetrics().getFrameRate());
+		final double[] rates = Metrics.getMetrics().getReportRates();
+		for (int r = 0; r < rates.length; r++)
+			f.format("%-16s %10.1f%n", String.format("Wiimote %d [1/s]", r+1), rates[r]);
+		metrics.setText(f.toString());
+	}
+
+}
@@ -35,8 +35,10 @@ import java.awt.event.WindowEvent;
 import java.awt.event.WindowFocusListener;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.List;
 
 import javax.swing.BorderFactory;
 import javax.swing.ButtonGroup;
@@ -51,8 +53,10 @@ import javax.swing.JPanel;
 import javax.swing.JRadioButton;
 import javax.swing.JSeparator;
 import javax.swing.JSlider;
+import javax.swing.JSpinner;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.UIManager;
 import javax.swing.border.Border;
 import javax.swing.border.TitledBorder;
@@ -68,8 +72,13 @@ import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
 import org.uweschmidt.wiimote.whiteboard.mouse.DefaultControlStrategy;
 import org.uweschmidt.wiimote.whiteboard.mouse.TouchpadControlStrategy;
 import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.AdaptiveExponentialSmoothing;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.KalmanSmoothing;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.MouseSmoothingStrategy;
 import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.NoSmoothing;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.OneEuroSmoothing;
 import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.SimpleMovingAverage;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.TriangularMovingAverage;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.WeightedMovingAverage;
 import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
 import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences.LocaleWrapper;
 import org.uweschmidt.wiimote.whiteboard.util.Util;
@@ -79,14 +88,19 @@ public class PreferencesWindow extends JDialog {
 	
 	private final static WWPreferences prefs = WWPreferences.getPreferences();
 	private final static ResourceMap r = Util.getResourceMap(PreferencesWindow.class);
+	// moving averages of the "static" smoothing, in the order of the averageBox
+	@SuppressWarnings("unchecked")
+	private final static List<Class<? extends MouseSmoothingStrategy>> AVERAGES = Arrays.<Class<? extends MouseSmoothingStrategy>>asList(SimpleMovingAverage.class, WeightedMovingAverage.class, TriangularMovingAverage.class);
 	
 	private JSlider delaySlider;
 	private JTextField tuioHost;
 	private JButton defaultsButton;
 	private JCheckBox batteryWarning, checkForUpdates, tuioEnable, mouseSmoothing, touchpadMode, rightClicks, assistDoubleClicks;
-	private JRadioButton staticSmoothing, adaptiveSmoothing;
+	private JRadioButton staticSmoothing, adaptiveSmoothing, kalmanSmoothing, oneEuroSmoothing;
 //	private JRadioButton[] wiimoteNumberButtons = new JRadioButton[WWPreferences.WIIMOTES];
-	private JComboBox languages;
+	private JSpinner smoothingWindow;
+	private JComboBox<LocaleWrapper> languages;
+	private JComboBox<String> averageBox;
 	private JTabbedPane tabbedPane;
 	private boolean donePack = false;
 	
@@ -136,10 +150,10 @@ public class PreferencesWindow extends JDialog {
 		generalPanel.add(new JSeparator(), "split, span, pushx, growx, wrap");
 
 		generalPanel.add(Util.newComponent(JLabel.class, "language"), "split, gapbottom 3, gapleft 6");
-		generalPanel.add(languages = Util.newComponent(JComboBox.class, "languageBox"), "wrap");
+		generalPanel.add(languages = newComboBox("languageBox"), "wrap");
 //		languages.putClientProperty("JComboBox.isSquare", Boolean.TRUE);
 //		languages.putClientProperty("JComboBox.isPopDown", Boolean.TRUE);
-		languages.setModel(new DefaultComboBoxModel(WWPreferences.LANGUAGES));
+		languages.setModel(new DefaultComboBoxModel<LocaleWrapper>(WWPreferences.LANGUAGES));
 		languages.addItemListener(new ItemListener() {
 			public void itemStateChanged(ItemEvent e) {
 				if (e.getStateChange() == ItemEvent.SELECTED) {
@@ -192,6 +206,10 @@ public class PreferencesWindow extends JDialog {
 			public void actionPerformed(ActionEvent arg0) {
 				staticSmoothing.setEnabled(mouseSmoothing.isSelected());
 				adaptiveSmoothing.setEnabled(mouseSmoothing.isSelected());
+				kalmanSmoothing.setEnabled(mouseSmoothing.isSelected());
+				oneEuroSmoothing.setEnabled(mouseSmoothing.isSelected());
+				smoothingWindow.setEnabled(mouseSmoothing.isSelected());
+				averageBox.setEnabled(mouseSmoothing.isSelected());
 				if (mouseSmoothing.isSelected()) {					
 					if (smoothingGroup.getSelection() == null)
 						adaptiveSmoothing.doClick();
@@ -199,6 +217,8 @@ public class PreferencesWindow extends JDialog {
 						// trigger actionlistener
 						if (adaptiveSmoothing.isSelected()) adaptiveSmoothing.doClick();
 						if (staticSmoothing.isSelected()) staticSmoothing.doClick();
+						if (kalmanSmoothing.isSelected()) kalmanSmoothing.doClick();
+						if (oneEuroSmoothing.isSelected()) oneEuroSmoothing.doClick();
 					}
 				} else {
 					prefs.setMouseSmoothing(NoSmoothing.class.getName());
@@ -209,7 +229,7 @@ public class PreferencesWindow extends JDialog {
 		mousePanel.add(staticSmoothing = Util.newComponent(JRadioButton.class, "staticSmoothing"));
 		staticSmoothing.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
-				prefs.setMouseSmoothing(SimpleMovingAverage.class.getName());
+				prefs.setMouseSmoothing(AVERAGES.get(averageBox.getSelectedIndex()).getName());
 			}
 		});
 		smoothingGroup.add(staticSmoothing);
@@ -222,6 +242,44 @@ public class PreferencesWindow extends JDialog {
 		});
 		smoothingGroup.add(adaptiveSmoothing);
 		
+		mousePanel.add(kalmanSmoothing = Util.newComponent(JRadioButton.class, "kalmanSmoothing"));
+		kalmanSmoothing.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				prefs.setMouseSmoothing(KalmanSmoothing.class.getName());
+			}
+		});
+		smoothingGroup.add(kalmanSmoothing);
+		
+		mousePanel.add(oneEuroSmoothing = Util.newComponent(JRadioButton.class, "oneEuroSmoothing"));
+		oneEuroSmoothing.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				prefs.setMouseSmoothing(OneEuroSmoothing.class.getName());
+			}
+		});
+		smoothingGroup.add(oneEuroSmoothing);
+		
+		// moving average of the static smoothing
+		mousePanel.add(Util.newComponent(JLabel.class, "smoothingWindowLabel"), "newline, split, gapleft 24");
+		mousePanel.add(smoothingWindow = Util.newComponent(JSpinner.class, "smoothingWindow"));
+		smoothingWindow.setModel(new SpinnerNumberModel(prefs.getSmoothingWindow(), 1, WWPreferences.MAX_SMOOTHING_WINDOW, 1));
+		smoothingWindow.addChangeListener(new ChangeListener() {
+			public void stateChanged(ChangeEvent e) {
+				if (isVisible()) {
+					prefs.setSmoothingWindow((Integer)smoothingWindow.getValue());
+				}
+			}
+		});
+		mousePanel.add(averageBox = newComboBox("averageBox"));
+		averageBox.setModel(new DefaultComboBoxModel<String>(new String[] {r.getString("simpleAverage"), r.getString("weightedAverage"), r.getString("triangularAverage")}));
+		averageBox.addItemListener(new ItemListener() {
+			public void itemStateChanged(ItemEvent e) {
+				if (e.getStateChange() == ItemEvent.SELECTED && isVisible()) {
+					// selecting an average selects the static smoothing
+					staticSmoothing.doClick();
+				}
+			}
+		});
+		
 		
 		
 		mousePanel.add(new JSeparator(), "newline, split, span, pushx, growx, wrap");	
@@ -366,13 +424,25 @@ public class PreferencesWindow extends JDialog {
 		
 		mouseSmoothing.setSelected(!NoSmoothing.class.getName().equals(prefs.getMouseSmoothing()));
 		adaptiveSmoothing.setSelected(true);
-		staticSmoothing.setSelected(SimpleMovingAverage.class.getName().equals(prefs.getMouseSmoothing()));
+		for (int i = 0; i < AVERAGES.size(); i++) {
+			if (AVERAGES.get(i).getName().equals(prefs.getMouseSmoothing())) {
+				averageBox.setSelectedIndex(i);
+				staticSmoothing.setSelected(true);
+			}
+		}
+		kalmanSmoothing.setSelected(KalmanSmoothing.class.getName().equals(prefs.getMouseSmoothing()));
+		oneEuroSmoothing.setSelected(OneEuroSmoothing.class.getName().equals(prefs.getMouseSmoothing()));
 		adaptiveSmoothing.setEnabled(mouseSmoothing.isSelected());
 		staticSmoothing.setEnabled(mouseSmoothing.isSelected());
+		kalmanSmoothing.setEnabled(mouseSmoothing.isSelected());
+		oneEuroSmoothing.setEnabled(mouseSmoothing.isSelected());
+		smoothingWindow.setValue(prefs.getSmoothingWindow());
+		smoothingWindow.setEnabled(mouseSmoothing.isSelected());
+		averageBox.setEnabled(mouseSmoothing.isSelected());
 
 		String lang = prefs.getLanguage();
 		for (int i = 0; i < languages.getItemCount(); i++) {
-			LocaleWrapper lw = (LocaleWrapper)languages.getItemAt(i);
+			LocaleWrapper lw = languages.getItemAt(i);
 			if (lang.equals(lw.getLocaleString())) {
 				languages.setSelectedIndex(i);
 				break;
@@ -392,5 +462,12 @@ public class PreferencesWindow extends JDialog {
 		}
 		setVisible(true);
 	}
+	
+	// like Util.newComponent, which can't create parameterized components
+	private static <E> JComboBox<E> newComboBox(String name) {
+		final JComboBox<E> box = new JComboBox<E>();
+		box.setName(name);
+		return box;
+	}
 
 }
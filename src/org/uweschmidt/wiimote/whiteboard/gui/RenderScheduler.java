@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.gui;
+
+import java.awt.Component;
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Repaints components on demand for all monitor windows: components are only
+ * repainted when new data has arrived (see {@link #request(Component)}) and
+ * they are showing, at most once per display refresh. The (shared) timer only
+ * runs while there are requests.
+ */
+public class RenderScheduler {
+	
+	private static final int DEFAULT_REFRESH_RATE = 60;
+	
+	// components to be repainted
+	private static final Set<Component> dirty = Collections.newSetFromMap(new ConcurrentHashMap<Component, Boolean>());
+	private static final AtomicBoolean running = new AtomicBoolean(false);
+	private static final Timer timer = new Timer(1000 / getRefreshRate(), new ActionListener() {
+		public void actionPerformed(ActionEvent e) {
+			repaint();
+		}
+	});
+	private static final Runnable start = new Runnable() {
+		public void run() {
+			timer.start();
+		}
+	};
+	
+	static {
+		// the first request is painted right away, following ones are coalesced
+		timer.setInitialDelay(0);
+		timer.setCoalesce(true);
+	}
+	
+	private RenderScheduler() {
+	}
+	
+	/**
+	 * Repaints the given component with the next display refresh, may be
+	 * called from any thread.
+	 */
+	public static void request(Component c) {
+		dirty.add(c);
+		if (running.compareAndSet(false, true))
+			SwingUtilities.invokeLater(start);
+	}
+	
+	// EDT
+	private static void repaint() {
+		if (dirty.isEmpty()) {
+			// nothing requested during the last refresh interval
+			timer.stop();
+			running.set(false);
+			// a request might have come in before the flag was reset
+			if (!dirty.isEmpty() && running.compareAndSet(false, true))
+				timer.start();
+			return;
+		}
+		for (Iterator<Component> it = dirty.iterator(); it.hasNext();) {
+			final Component c = it.next();
+			it.remove();
+			if (c.isShowing())
+				c.repaint();
+		}
+	}
+	
+	private static int getRefreshRate() {
+		try {
+			final DisplayMode mode = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode();
+			if (mode.getRefreshRate() != DisplayMode.REFRESH_RATE_UNKNOWN)
+				return Math.max(1, mode.getRefreshRate());
+		} catch (Exception e) {
+			// headless
+		}
+		return DEFAULT_REFRESH_RATE;
+	}
+
+}
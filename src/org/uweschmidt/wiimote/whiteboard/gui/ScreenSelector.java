@@ -43,8 +43,6 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import javax.media.jai.PerspectiveTransform;
 import javax.swing.BorderFactory;
@@ -67,18 +65,18 @@ public class ScreenSelector extends JPanel implements WiimoteDataListener {
 	private static final int MAX_H = 130;
 	private static final int MAX_W = 185;
 	
-	private static final long REPAINT_FREQ = 1000 / 20;
-	
 	private WiimoteCalibration calibration;
 //	private WiimoteDataHandler dh;
 	private List<ScreenBox> screenBoxes = new LinkedList<ScreenBox>();
-	private Point lastCursor = null, cursor = null;
+	// copy of the current cursor, the warped points are reused for subsequent frames
+	private final Point cursorPos = new Point();
+	private volatile Point cursor = null;
 	
 	public ScreenSelector(WiimoteCalibration calibration, WiimoteDataHandler dh) {
 		super(null);
 		this.calibration = calibration;
 //		this.dh = dh;
-		dh.addWiimoteDataListener(this);
+		dh.addWiimoteDataListener(this, true);
 		
 		final GraphicsDevice[] screens = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
 		
@@ -114,22 +112,6 @@ public class ScreenSelector extends JPanel implements WiimoteDataListener {
 			screenBoxes.add(sb);
 			add(sb);
 		}
-		
-		new Timer(true).schedule(new UpdateTask(), 0, REPAINT_FREQ);
-	}
-	
-	private class UpdateTask extends TimerTask {
-		@Override
-		public void run() {
-			if (cursor != lastCursor) {
-				for (ScreenBox sb : screenBoxes) {
-					if (sb.isSelected() && sb.isEnabled()) {
-						lastCursor = cursor;
-						sb.repaint();
-					}
-				}
-			}
-		}
 	}
 	
 	private Rectangle transformBounds(PerspectiveTransform t, Rectangle b) {
@@ -149,7 +131,8 @@ public class ScreenSelector extends JPanel implements WiimoteDataListener {
 	private class ScreenBox extends JRadioButton {
 		private final BasicStroke STROKE = new BasicStroke(2f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER);
 		private static final int DIAMETER = 4;
-		private static final int MAX_TRACE = 1000 / (int)REPAINT_FREQ;
+		// number of painted positions that are traced
+		private static final int MAX_TRACE = 20;
 		private LinkedList<Point> trace = new LinkedList<Point>();		
 		private GraphicsDevice screen;
 		private final Rectangle bounds;
@@ -183,6 +166,7 @@ public class ScreenSelector extends JPanel implements WiimoteDataListener {
 		@Override
 		protected void paintComponent(Graphics g) {
 			super.paintComponent(g);
+			final Point cursor = ScreenSelector.this.cursor;
 			if (isSelected() && cursor != null) {
 				Graphics2D g2d = (Graphics2D)g;
 				g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
@@ -217,7 +201,7 @@ public class ScreenSelector extends JPanel implements WiimoteDataListener {
 					
 					trace.addLast(new Point(x,y));
 				} catch (NullPointerException e) {
-					// cursor can be null because of UpdateTask, no problem
+					// cursor can be null because of the listener thread, no problem
 					trace.clear();
 				}
 			} else {
@@ -249,8 +233,18 @@ public class ScreenSelector extends JPanel implements WiimoteDataListener {
 //		}
 	}
 	
-	public void irWarped(Map<Wiimote, IRDot[]> data, Point[] warped) {
-		cursor = warped[0];
+	public void irWarped(Map<Wiimote, IRDot[]> data, Point2D[] warped) {
+		if (warped[0] == null && cursor == null) return;
+		if (warped[0] != null) {
+			cursorPos.setLocation(warped[0]);
+			cursor = cursorPos;
+		} else {
+			cursor = null;
+		}
+		for (ScreenBox sb : screenBoxes) {
+			if (sb.isSelected() && sb.isEnabled())
+				RenderScheduler.request(sb);
+		}
 	}
 	public void batteryLevel(Wiimote wiimote, double level) {}
 	public void irLights(Wiimote wiimote, IRDot[] lights) {}
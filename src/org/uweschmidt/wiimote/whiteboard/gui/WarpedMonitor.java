@@ -28,14 +28,11 @@ package org.uweschmidt.wiimote.whiteboard.gui;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.GraphicsDevice;
-import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.geom.Point2D;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import javax.swing.BorderFactory;
 import javax.swing.JDialog;
@@ -55,24 +52,22 @@ import org.uweschmidt.wiimote.whiteboard.util.Util;
 @SuppressWarnings("serial")
 public class WarpedMonitor extends JDialog implements WiimoteDataListener {
 
-	private static final int REPAINT_FREQ = 1000 / 50;
 	static final int RADIUS = 10;
 
-	private JPanel canvas;
+	private LightCanvas canvas;
 	private Point2D[][] lights = new Point2D[WWPreferences.WIIMOTES+1][4];
-	private LightLabel[][] labels = new LightLabel[WWPreferences.WIIMOTES+1][4];
 	private WiimoteCalibration calibration;
 	private WiimoteDataHandler dh;
 
 	public WarpedMonitor(WiimoteDataHandler dh, final WiimoteCalibration calibration) {
 		super(Application.getInstance(WiimoteWhiteboard.class).getMainFrame(), "Warped Point Monitor");
 		setLayout(new BorderLayout());
-		dh.addWiimoteDataListener(this);
+		dh.addWiimoteDataListener(this, true);
 		this.calibration = calibration;
 		this.dh = dh;
 		((JPanel) getContentPane()).setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
-		canvas = new JPanel(null, true);
+		canvas = new LightCanvas(lights);
 		canvas.setBorder(BorderFactory.createLineBorder(Color.black));
 		add(canvas, BorderLayout.CENTER);
 		
@@ -101,7 +96,6 @@ public class WarpedMonitor extends JDialog implements WiimoteDataListener {
 		});
 
 		Util.placeDialogWindow(this, 640, 480);
-		new Timer(true).schedule(new UpdateTask(), 0, REPAINT_FREQ);
 	}
 
 	@Action
@@ -109,27 +103,14 @@ public class WarpedMonitor extends JDialog implements WiimoteDataListener {
 		setVisible(true);
 	}
 
-	private class UpdateTask extends TimerTask {
-		@Override
-		public void run() {
-			if (isVisible()) {
-				for (int i = WWPreferences.WIIMOTES; i >= 0; i--)
-					for (int j = 0; j < 4; j++) {
-						if (labels[i][j] != null)
-							labels[i][j].update();
-					}
-			}
-		}
-	}
-
 	public void irLights(Wiimote wiimote, IRDot[] lights) {
 	}
 	
-	public void irWarped(Map<Wiimote, IRDot[]> data, Point[] warped) {
+	public void irWarped(Map<Wiimote, IRDot[]> data, Point2D[] warped) {
 		if (isVisible()) {
 			Rectangle bounds = calibration.getScreen().getDefaultConfiguration().getBounds();
 			for (int i = 0; i < 4; i++) {
-				final Point w = warped[i];
+				final Point2D w = warped[i];
 				this.lights[0][i] = w == null ? null : new Point2D.Double(w.getX() / bounds.getWidth(), 1 - w.getY() / bounds.getHeight());
 			}
 //			Map<String, Point[]> warpedData = new LinkedHashMap<String, Point[]>();
@@ -158,7 +139,7 @@ public class WarpedMonitor extends JDialog implements WiimoteDataListener {
 //			for (int i = cluster.length; i < 4; i++)
 //				this.lights[0][i] = null;
 			
-			
+			RenderScheduler.request(canvas);
 		}
 	}
 
@@ -167,17 +148,12 @@ public class WarpedMonitor extends JDialog implements WiimoteDataListener {
 
 	public void wiimoteConnected(Wiimote wiimote) {
 		if (wiimote.getId() == 1)
-			for (int i = 0; i < 4; i++)
-				canvas.add(labels[0][i] = new LightLabel(canvas, lights, 0, i + 1, Color.red));
-		for (int i = 0; i < 4; i++)
-			canvas.add(labels[wiimote.getId()][i] = new LightLabel(canvas, lights, wiimote.getId(), i + 1));
+			canvas.setRow(0, Color.red);
+		canvas.setRow(wiimote.getId(), WiimoteIcon.COLORS[wiimote.getId() - 1]);
 	}
 
 	public void wiimoteDisconnected(Wiimote wiimote) {
-		for (int i = 0; i < 4; i++) {
-			canvas.remove(labels[wiimote.getId()][i]);
-			labels[wiimote.getId()][i] = null;
-		}
+		canvas.setRow(wiimote.getId(), null);
 	}
 
 }
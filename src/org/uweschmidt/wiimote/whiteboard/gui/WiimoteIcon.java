@@ -37,7 +37,7 @@ import net.miginfocom.swing.MigLayout;
 @SuppressWarnings("serial")
 public class WiimoteIcon extends JPanel {
 
-	public static final Color[] COLORS = { Color.white, Color.pink, Color.orange, Color.green };
+	public static final Color[] COLORS = { Color.white, Color.pink, Color.orange, Color.green, Color.cyan, Color.yellow, Color.magenta, Color.lightGray };
 	private JLabel idLabel;
 
 	public WiimoteIcon(int id) {
@@ -49,7 +49,8 @@ public class WiimoteIcon extends JPanel {
 			l.setOpaque(true);
 			l.setBackground(SystemColor.textInactiveText);
 			add(l, "w 6!, h 6!");
-			if (i == id) idLabel = l;
+			// Wiimotes have only 4 LEDs
+			if (i == (id - 1) % 4 + 1) idLabel = l;
 		}
 	}
 	
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds with log-linear buckets
+ * (like HdrHistogram): durations below 64ns are counted exactly, larger ones
+ * in 32 buckets per power of two, i.e. with a relative error of at most 3%.
+ * Recording is wait-free and doesn't create any objects.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+	
+	private static final int SUB_BITS = 5, SUB = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+	
+	private final String name;
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong max = new AtomicLong();
+	
+	public LatencyHistogram(String name) {
+		this.name = name;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public void record(long ns) {
+		if (ns < 0) ns = 0;
+		counts.incrementAndGet(index(ns));
+		long m;
+		while (ns > (m = max.get()) && !max.compareAndSet(m, ns));
+	}
+	
+	private static int index(long ns) {
+		if (ns < 2 * SUB) return (int) ns;
+		final int e = 63 - Long.numberOfLeadingZeros(ns);
+		return (e - SUB_BITS) * SUB + (int) (ns >>> (e - SUB_BITS));
+	}
+	
+	// middle of the bucket
+	private static long value(int index) {
+		if (index < 2 * SUB) return index;
+		final int shift = index / SUB - 1;
+		return ((long) (index % SUB + SUB) << shift) + (1L << shift >> 1);
+	}
+	
+	public long getCount() {
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			n += counts.get(i);
+		return n;
+	}
+	
+	public long getMax() {
+		return max.get();
+	}
+	
+	// approximately, from the buckets
+	public long getMean() {
+		long n = 0, sum = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			final long c = counts.get(i);
+			n += c;
+			sum += c * value(i);
+		}
+		return n > 0 ? sum / n : 0;
+	}
+	
+	public long getMedian() {
+		return getPercentile(50);
+	}
+	
+	public long get99thPercentile() {
+		return getPercentile(99);
+	}
+	
+	/**
+	 * @return (approximately) the given percentile of the recorded durations,
+	 *         0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+		// counts may change meanwhile, so sum them up first
+		final long n = getCount();
+		final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+		long sum = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			sum += counts.get(i);
+			if (sum >= rank)
+				return Math.min(value(i), max.get());
+		}
+		return 0;
+	}
+	
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+		max.set(0);
+	}
+
+}
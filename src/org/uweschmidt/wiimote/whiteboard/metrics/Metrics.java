@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.uweschmidt.wiimote.whiteboard.FrameClock;
+import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
+import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
+
+/**
+ * Latencies of the stages between an IR report arriving and the cursor
+ * moving, and the report rate of each Wiimote. Available as MBeans in the
+ * domain {@value #DOMAIN}.
+ * <p>
+ * Stages are timed like this:
+ * 
+ * <pre>
+ * long t = System.nanoTime();
+ * ...
+ * t = Metrics.record(Stage.WARP, t);
+ * ...
+ * Metrics.record(Stage.CLUSTER, t);
+ * </pre>
+ */
+public class Metrics implements MetricsMBean {
+	
+	public static final String DOMAIN = "org.uweschmidt.wiimote.whiteboard";
+	
+	public static enum Stage {
+		// Bluetooth callback or IRSource handing over a report
+		RECEIVE("Receive"),
+		// report received until it's taken by the processing thread
+		QUEUE("Queue"),
+		WARP("Warp"),
+		CLUSTER("Cluster"),
+		SMOOTHING("Smoothing"),
+		CURSOR_CONTROL("Cursor control"),
+		// injecting the cursor events
+		MOUSE("Mouse"),
+		TUIO("TUIO"),
+		// report received until the cursor events are injected
+		TOTAL("Total");
+		
+		private final LatencyHistogram histogram;
+		
+		private Stage(String name) {
+			histogram = new LatencyHistogram(name);
+		}
+		
+		public LatencyHistogram getHistogram() {
+			return histogram;
+		}
+		
+		@Override
+		public String toString() {
+			return histogram.getName();
+		}
+	}
+	
+	private static final Metrics METRICS = new Metrics();
+	private static final long SAMPLE_PERIOD = 1000;
+	
+	private final AtomicLongArray reports = new AtomicLongArray(WWPreferences.WIIMOTES);
+	private final AtomicLong frames = new AtomicLong();
+	// counts of the last sample
+	private final long[] lastReports = new long[WWPreferences.WIIMOTES];
+	private long lastFrames = 0, lastSample = 0;
+	private volatile double[] reportRates = new double[WWPreferences.WIIMOTES];
+	private volatile double frameRate = 0;
+	private Timer timer = null;
+	
+	private Metrics() {
+	}
+	
+	public static Metrics getMetrics() {
+		return METRICS;
+	}
+	
+	/**
+	 * Records the time elapsed since the given time for the given stage.
+	 * 
+	 * @return the current System.nanoTime(), i.e. the begin of the next stage
+	 */
+	public static long record(Stage stage, long begin) {
+		final long now = System.nanoTime();
+		stage.histogram.record(now - begin);
+		return now;
+	}
+	
+	/**
+	 * Records the time elapsed since the given {@link FrameClock} time (e.g.
+	 * the arrival of a report) for the given stage. Not recorded if another
+	 * clock than the system clock is used (accelerated replay).
+	 */
+	public static void latency(Stage stage, long begin) {
+		if (FrameClock.get() == FrameClock.SYSTEM)
+			stage.histogram.record(System.nanoTime() - begin);
+	}
+	
+	public static void report(int remote) {
+		METRICS.reports.incrementAndGet(remote);
+	}
+	
+	public static void frame() {
+		METRICS.frames.incrementAndGet();
+	}
+	
+	/**
+	 * Starts sampling the rates and registers the MBeans.
+	 */
+	public synchronized void start() {
+		if (timer != null) return;
+		lastSample = System.nanoTime();
+		timer = new Timer("Metrics", true);
+		timer.scheduleAtFixedRate(new TimerTask() {
+			@Override
+			public void run() {
+				sample();
+			}
+		}, SAMPLE_PERIOD, SAMPLE_PERIOD);
+		
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(this, new ObjectName(DOMAIN + ":type=Metrics"));
+			for (Stage s : Stage.values())
+				server.registerMBean(s.histogram, new ObjectName(DOMAIN + ":type=Latency,name=" + ObjectName.quote(s.toString())));
+		} catch (Exception e) {
+			e.printStackTrace();
+			WiimoteWhiteboard.getLogger().log(Level.WARNING, "Error on registering metrics MBeans", e);
+		}
+	}
+	
+	private synchronized void sample() {
+		final long now = System.nanoTime();
+		final double seconds = (now - lastSample) / 1e9;
+		final double[] rates = new double[lastReports.length];
+		for (int r = 0; r < rates.length; r++) {
+			final long n = reports.get(r);
+			rates[r] = (n - lastReports[r]) / seconds;
+			lastReports[r] = n;
+		}
+		final long n = frames.get();
+		frameRate = (n - lastFrames) / seconds;
+		lastFrames = n;
+		lastSample = now;
+		reportRates = rates;
+	}
+	
+	/**
+	 * @return IR reports per second of each Wiimote (by number) during the
+	 *         last second
+	 */
+	public double[] getReportRates() {
+		return reportRates.clone();
+	}
+	
+	public double getFrameRate() {
+		return frameRate;
+	}
+	
+	public void reset() {
+		for (Stage s : Stage.values())
+			s.histogram.reset();
+	}
+
+}
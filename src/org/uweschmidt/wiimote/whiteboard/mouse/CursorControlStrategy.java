@@ -25,10 +25,12 @@
 
 package org.uweschmidt.wiimote.whiteboard.mouse;
 
-import java.awt.Point;
+import java.awt.geom.Point2D;
 
 public interface CursorControlStrategy {
 	
-	public void process(Point p);
+	public void process(Point2D p);
+	// cancels pending delayed events, e.g. when cursor control is turned off
+	public void reset();
 
 }
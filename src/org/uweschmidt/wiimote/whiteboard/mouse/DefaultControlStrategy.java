@@ -25,32 +25,58 @@
 
 package org.uweschmidt.wiimote.whiteboard.mouse;
 
-import java.awt.Point;
+import java.awt.geom.Point2D;
 
 import org.uweschmidt.wiimote.whiteboard.mouse.rightclick.RightClickStrategy;
 import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
+import org.uweschmidt.wiimote.whiteboard.util.TimerWheel;
 
 public class DefaultControlStrategy implements CursorControlStrategy {
 	
 	private static final WWPreferences prefs = WWPreferences.getPreferences();
 	private RightClickStrategy rcs = WWPreferences.RIGHT_CLICK_STRATEGY;
 	
-	public void process(Point p) {
+	// light went off before the delayed press
+	private boolean lifted = false;
+	// delayed press, so the cursor has arrived before the button goes down
+	private final TimerWheel.Timeout press = new TimerWheel.Timeout(new Runnable() {
+		public void run() {
+			if (!Mouse.isCursorControl()) return;
+			Mouse.LEFT_BUTTON.setPressed(true);
+			// still a click
+			if (lifted)
+				Mouse.LEFT_BUTTON.setPressed(false);
+		}
+	});
+	
+	public void process(Point2D p) {
 		
 		rcs.process(p);
 		
 		if (p != null) {
+			lifted = false;
 			Mouse.move(p);
 			if (prefs.isLeftClick() && !(prefs.isRightClick() && rcs.trigger())) {
 				if (WWPreferences.MOUSE_PRESS_DELAY > 0 && !Mouse.LEFT_BUTTON.isPressed()) {
-					Mouse.sleep(WWPreferences.MOUSE_PRESS_DELAY);
+					if (!press.isPending())
+						Mouse.schedule(press, WWPreferences.MOUSE_PRESS_DELAY);
+				} else {
+					Mouse.LEFT_BUTTON.setPressed(true);
 				}
-				Mouse.LEFT_BUTTON.setPressed(true);
+			} else {
+				press.cancel();
 			}
 		} else {
+			lifted = press.isPending();
 			Mouse.LEFT_BUTTON.setPressed(false);
 		}
 		
 	}
+	
+	public void reset() {
+		press.cancel();
+		lifted = false;
+		rcs.reset();
+	}
 
 }
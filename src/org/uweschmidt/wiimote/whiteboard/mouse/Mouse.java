@@ -25,41 +25,86 @@
 
 package org.uweschmidt.wiimote.whiteboard.mouse;
 
-import java.awt.AWTException;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
-import java.awt.Point;
 import java.awt.Rectangle;
-import java.awt.Robot;
-import java.awt.event.InputEvent;
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.util.logging.Level;
 
+import org.uweschmidt.wiimote.whiteboard.FrameClock;
+import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
+import org.uweschmidt.wiimote.whiteboard.mouse.backend.CoalescingBackend;
+import org.uweschmidt.wiimote.whiteboard.mouse.backend.CursorBackend;
+import org.uweschmidt.wiimote.whiteboard.mouse.backend.NullBackend;
+import org.uweschmidt.wiimote.whiteboard.mouse.backend.RobotBackend;
+import org.uweschmidt.wiimote.whiteboard.mouse.backend.EvdevBackend;
 import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
+import org.uweschmidt.wiimote.whiteboard.util.TimerWheel;
 
 public enum Mouse {
-	LEFT_BUTTON(InputEvent.BUTTON1_MASK), RIGHT_BUTTON(InputEvent.BUTTON3_MASK);
+	LEFT_BUTTON, RIGHT_BUTTON;
 	
 	private static final WWPreferences prefs = WWPreferences.getPreferences();
-	private static Point position = new Point(Integer.MIN_VALUE, Integer.MIN_VALUE);
-	private static Robot r;
+	private static final Point2D position = new Point2D.Double(Integer.MIN_VALUE, Integer.MIN_VALUE);
+	// events of one frame are collected and injected on flush()
+	private static CoalescingBackend output;
 	private static Rectangle bounds; 
+	// delayed presses and releases, run holding the lock of Mouse.class (like the frame path)
+	private static final TimerWheel timer = new TimerWheel("Mouse Timer", Mouse.class, 1024) {
+		@Override
+		protected void beforeTasks() {
+			// the events of the tasks happen at a frame of their own
+			FrameClock.beginFrame(Math.max(FrameClock.frameTime(), FrameClock.now()));
+		}
+		@Override
+		protected void afterTasks() {
+			flush();
+		}
+	};
+	
+	// timer tasks must not touch the buttons while cursor control is off
+	private static volatile boolean cursorControl = true;
 	
-	private final int id;
 	private long lastReleased = -1, lastPressed = -1;
 	private boolean pressed;
 	
 	static {
-		// TODO when screen changes, http://java.sun.com/j2se/1.5.0/docs/api/java/awt/Robot.html#Robot(java.awt.GraphicsDevice)
-		final GraphicsDevice screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
-		try {
-			r = new Robot(screen);
-			setScreen(screen);
-		} catch (AWTException e) {
-			e.printStackTrace();
-		} 
+		if (GraphicsEnvironment.isHeadless()) {
+			// no screen (e.g. benchmarks), see setBackend(CursorBackend)
+			bounds = new Rectangle(0, 0, Short.MAX_VALUE, Short.MAX_VALUE);
+			output = new CoalescingBackend(new NullBackend());
+		} else {
+			init();
+		}
 	}
 	
-	private Mouse(int id) {
-		this.id = id;
+	private static void init() {
+		final GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
+		final GraphicsDevice screen = ge.getDefaultScreenDevice();
+		setScreen(screen);
+		CursorBackend backend = null;
+		if (WWPreferences.EVENT_DEVICE != null) {
+			try {
+				// all screens
+				Rectangle desktop = new Rectangle();
+				for (GraphicsDevice gd : ge.getScreenDevices())
+					desktop = desktop.union(gd.getDefaultConfiguration().getBounds());
+				backend = new EvdevBackend(new File(WWPreferences.EVENT_DEVICE), desktop);
+				WiimoteWhiteboard.getLogger().info(String.format("Using input device %s for the cursor.", WWPreferences.EVENT_DEVICE));
+			} catch (Exception e) {
+				e.printStackTrace();
+				WiimoteWhiteboard.getLogger().log(Level.WARNING, "Error on opening input device, falling back to java.awt.Robot", e);
+			}
+		}
+		if (backend == null) {
+			try {
+				backend = new RobotBackend(screen);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		output = new CoalescingBackend(backend);
 	}
 	
 	public static void setScreen(GraphicsDevice screen) {
@@ -72,22 +117,51 @@ public enum Mouse {
 //		} 
 	}
 	
-	public static void sleep(int ms) {
-		r.delay(ms);
+	/**
+	 * Runs the task of the given timeout after the given delay on the timer
+	 * thread, holding the lock of Mouse.class; its events are injected right
+	 * away. To be called holding the same lock.
+	 */
+	public static TimerWheel.Timeout schedule(TimerWheel.Timeout timeout, long delayMillis) {
+		return timer.schedule(timeout, delayMillis);
 	}
 	
-	public static void move(Point p) {
+	public static void move(Point2D p) {
 		// negated "don't move"-condition
 		if (!(prefs.assistDoubleClicks() && position.distance(p) < WWPreferences.PIXEL_MOVE_TOLERANCE && (
-			(Mouse.LEFT_BUTTON.isPressed() && System.currentTimeMillis() - Mouse.LEFT_BUTTON.getLastPressed() < WWPreferences.SHORT_DELAY) ||
-			(!Mouse.LEFT_BUTTON.isPressed() && System.currentTimeMillis() - Mouse.LEFT_BUTTON.getLastReleased() < WWPreferences.SHORT_DELAY)
+			(Mouse.LEFT_BUTTON.isPressed() && FrameClock.frameMillis() - Mouse.LEFT_BUTTON.getLastPressed() < WWPreferences.SHORT_DELAY) ||
+			(!Mouse.LEFT_BUTTON.isPressed() && FrameClock.frameMillis() - Mouse.LEFT_BUTTON.getLastReleased() < WWPreferences.SHORT_DELAY)
 		))) {
-			r.mouseMove(Math.min(Math.max(bounds.x, p.x), bounds.x+bounds.width-1), Math.min(Math.max(bounds.y, p.y), bounds.y+bounds.height-1));
-			position = p;
+			output.move(Math.min(Math.max(bounds.x, p.getX()), bounds.x+bounds.width-1), Math.min(Math.max(bounds.y, p.getY()), bounds.y+bounds.height-1));
+			position.setLocation(p);
 		}
 	}
 	
-	public static Point getPosition() {
+	/**
+	 * Injects the cursor events of the current frame.
+	 */
+	public static void flush() {
+		output.flush();
+	}
+	
+	public static void setBackend(CursorBackend backend) {
+		flush();
+		output = new CoalescingBackend(backend);
+	}
+	
+	public static boolean isCursorControl() {
+		return cursorControl;
+	}
+	
+	public static void setCursorControl(boolean cursorControl) {
+		Mouse.cursorControl = cursorControl;
+	}
+	
+	public static CoalescingBackend getOutput() {
+		return output;
+	}
+	
+	public static Point2D getPosition() {
 		return position;
 	}
 	
@@ -97,12 +171,12 @@ public enum Mouse {
 	
 	public void setPressed(boolean pressRequest) {
 		if (pressRequest && !pressed) {
-			r.mousePress(id);
-			lastPressed = System.currentTimeMillis();
+			output.press(this);
+			lastPressed = FrameClock.frameMillis();
 //			WiimoteWhiteboard.getLogger().info(this + " pressed");
 		} else if (!pressRequest && pressed) {
-			r.mouseRelease(id);
-			lastReleased = System.currentTimeMillis();
+			output.release(this);
+			lastReleased = FrameClock.frameMillis();
 //			WiimoteWhiteboard.getLogger().info(this + " released");
 		}
 		this.pressed = pressRequest;
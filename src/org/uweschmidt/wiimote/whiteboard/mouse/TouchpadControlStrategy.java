@@ -25,21 +25,32 @@
 
 package org.uweschmidt.wiimote.whiteboard.mouse;
 
-import java.awt.Point;
+import java.awt.geom.Point2D;
 
+import org.uweschmidt.wiimote.whiteboard.FrameClock;
 import org.uweschmidt.wiimote.whiteboard.mouse.rightclick.RightClickStrategy;
 import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
+import org.uweschmidt.wiimote.whiteboard.util.TimerWheel;
 
 public class TouchpadControlStrategy implements CursorControlStrategy {
 	
 	private static final WWPreferences prefs = WWPreferences.getPreferences();
 	private RightClickStrategy rcs = WWPreferences.RIGHT_CLICK_STRATEGY;
 	
-	private long lightOnTime = 0, lightOffTime = System.currentTimeMillis();
+	// light off since ever, regardless of the clock
+	private long lightOnTime = Long.MIN_VALUE, lightOffTime = Long.MIN_VALUE + 1;
 	
-	public void process(Point p) {
+	// deferred release after a short flash, unless the light is on again by then
+	private final TimerWheel.Timeout release = new TimerWheel.Timeout(new Runnable() {
+		public void run() {
+			if (Mouse.isCursorControl() && lightOnTime <= lightOffTime)
+				Mouse.LEFT_BUTTON.setPressed(false);
+		}
+	});
+	
+	public void process(Point2D p) {
 		
-		final long now = System.currentTimeMillis();
+		final long now = FrameClock.frameMillis();
 		final boolean lightOnNow = p != null;
 		final boolean lightOnBefore = lightOnTime > lightOffTime;
 		
@@ -52,11 +63,6 @@ public class TouchpadControlStrategy implements CursorControlStrategy {
 			lightOffTime = now;
 		}
 		
-		// release mouse button
-		if (!lightOnNow && Mouse.LEFT_BUTTON.isPressed() && now - lightOffTime > WWPreferences.SHORT_DELAY) {
-			Mouse.LEFT_BUTTON.setPressed(false);
-		}
-		
 		if (lightOnNow) {
 			Mouse.move(p);
 			if (!prefs.isLeftClick() || (prefs.isRightClick() && rcs.trigger())) {
@@ -72,11 +78,19 @@ public class TouchpadControlStrategy implements CursorControlStrategy {
 					Mouse.LEFT_BUTTON.setPressed(false);
 				}
 				Mouse.LEFT_BUTTON.setPressed(true);
+				Mouse.schedule(release, WWPreferences.SHORT_DELAY + 1);
 			} else {
 				Mouse.LEFT_BUTTON.setPressed(false);
 			}
 			
 		}
 	}
+	
+	public void reset() {
+		release.cancel();
+		lightOnTime = Long.MIN_VALUE;
+		lightOffTime = Long.MIN_VALUE + 1;
+		rcs.reset();
+	}
 
 }
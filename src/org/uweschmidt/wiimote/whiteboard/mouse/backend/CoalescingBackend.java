@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.mouse.backend;
+
+import org.uweschmidt.wiimote.whiteboard.mouse.Mouse;
+
+/**
+ * Collects the events of one frame and passes them on to the actual backend
+ * in their original order on {@link #flush()}. Successive moves are merged
+ * and moves that stay on the pixel of the current cursor position are
+ * dropped; the moves that are passed on keep their sub-pixel position.
+ */
+public class CoalescingBackend implements CursorBackend {
+	
+	private static final int MOVE = 0, PRESS = 1, RELEASE = 2;
+	private static final int CAPACITY = 16;
+	
+	private final CursorBackend backend;
+	
+	// queued events (type and x, y or button)
+	private final int[] type = new int[CAPACITY];
+	private final double[] x = new double[CAPACITY], y = new double[CAPACITY];
+	private final Mouse[] button = new Mouse[CAPACITY];
+	private int size = 0;
+	
+	// pixel of the last move passed on
+	private long lastX = Long.MIN_VALUE, lastY = Long.MIN_VALUE;
+	private long injected = 0, saved = 0;
+	
+	public CoalescingBackend(CursorBackend backend) {
+		this.backend = backend;
+	}
+	
+	public void move(double x, double y) {
+		if (size > 0 && type[size-1] == MOVE) {
+			// replace previous move
+			saved++;
+			size--;
+		}
+		add(MOVE, x, y, null);
+	}
+
+	public void press(Mouse button) {
+		add(PRESS, 0, 0, button);
+	}
+
+	public void release(Mouse button) {
+		add(RELEASE, 0, 0, button);
+	}
+	
+	private void add(int t, double x, double y, Mouse button) {
+		if (size == CAPACITY)
+			flush();
+		type[size] = t;
+		this.x[size] = x;
+		this.y[size] = y;
+		this.button[size] = button;
+		size++;
+	}
+	
+	/**
+	 * Injects all queued events.
+	 */
+	public void flush() {
+		for (int i = 0; i < size; i++) {
+			switch (type[i]) {
+			case MOVE:
+				final long px = Math.round(x[i]), py = Math.round(y[i]);
+				if (px == lastX && py == lastY) {
+					saved++;
+					continue;
+				}
+				backend.move(x[i], y[i]);
+				lastX = px;
+				lastY = py;
+				break;
+			case PRESS:
+				backend.press(button[i]);
+				break;
+			case RELEASE:
+				backend.release(button[i]);
+				break;
+			}
+			injected++;
+		}
+		size = 0;
+	}
+	
+	public CursorBackend getBackend() {
+		return backend;
+	}
+	
+	/**
+	 * @return number of events passed on to the actual backend
+	 */
+	public long getInjected() {
+		return injected;
+	}
+	
+	/**
+	 * @return number of moves that were merged or dropped
+	 */
+	public long getSaved() {
+		return saved;
+	}
+
+}
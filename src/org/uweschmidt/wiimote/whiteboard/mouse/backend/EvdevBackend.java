@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.mouse.backend;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+
+import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
+import org.uweschmidt.wiimote.whiteboard.mouse.Mouse;
+
+/**
+ * Linux backend that writes <code>struct input_event</code>s for an absolute
+ * pointer directly to an event device, so every cursor update is a single
+ * write instead of a round-trip to the X server.
+ * <p>
+ * Java can't issue the ioctls to create a device through
+ * <code>/dev/uinput</code>, so the event device
+ * (<code>/dev/input/eventX</code>) has to exist already, e.g. a virtual
+ * tablet created by another tool, with ABS_X/ABS_Y ranging from 0 to
+ * {@link #ABS_MAX}, BTN_LEFT and BTN_RIGHT. The virtual desktop is mapped to
+ * that range.
+ */
+public class EvdevBackend implements CursorBackend {
+	
+	public static final int ABS_MAX = 32767;
+	
+	// linux/input.h
+	private static final short EV_SYN = 0x00, EV_KEY = 0x01, EV_ABS = 0x03;
+	private static final short SYN_REPORT = 0, ABS_X = 0x00, ABS_Y = 0x01;
+	private static final short BTN_LEFT = 0x110, BTN_RIGHT = 0x111;
+	
+	// struct timeval (2 longs), u16 type, u16 code, s32 value
+	private static final int TIMEVAL = "32".equals(System.getProperty("sun.arch.data.model")) ? 8 : 16;
+	public static final int EVENT_SIZE = TIMEVAL + 8;
+	
+	private final FileChannel channel;
+	private final Rectangle desktop;
+	// up to 3 events per write (2 values + sync)
+	private final ByteBuffer buf = ByteBuffer.allocateDirect(3 * EVENT_SIZE).order(ByteOrder.nativeOrder());
+	private boolean failed = false;
+	
+	public EvdevBackend(File device, Rectangle desktop) throws IOException {
+		this.channel = new FileOutputStream(device, true).getChannel();
+		this.desktop = new Rectangle(desktop);
+	}
+
+	public void move(double x, double y) {
+		buf.clear();
+		event(EV_ABS, ABS_X, scale(x - desktop.x, desktop.width));
+		event(EV_ABS, ABS_Y, scale(y - desktop.y, desktop.height));
+		event(EV_SYN, SYN_REPORT, 0);
+		write();
+	}
+
+	public void press(Mouse button) {
+		buf.clear();
+		event(EV_KEY, code(button), 1);
+		event(EV_SYN, SYN_REPORT, 0);
+		write();
+	}
+
+	public void release(Mouse button) {
+		buf.clear();
+		event(EV_KEY, code(button), 0);
+		event(EV_SYN, SYN_REPORT, 0);
+		write();
+	}
+	
+	private static short code(Mouse button) {
+		return button == Mouse.RIGHT_BUTTON ? BTN_RIGHT : BTN_LEFT;
+	}
+	
+	// keeps the sub-pixel part, the range has more steps than the desktop has pixels
+	private static int scale(double v, int size) {
+		return size > 1 ? (int) Math.round(v * ABS_MAX / (size - 1)) : 0;
+	}
+	
+	private void event(short type, short code, int value) {
+		// time is filled in by the kernel
+		for (int i = 0; i < TIMEVAL; i++)
+			buf.put((byte) 0);
+		buf.putShort(type);
+		buf.putShort(code);
+		buf.putInt(value);
+	}
+	
+	private void write() {
+		buf.flip();
+		try {
+			while (buf.hasRemaining())
+				channel.write(buf);
+		} catch (IOException e) {
+			// only report first error, cursor updates come in at 100 Hz
+			if (!failed) {
+				failed = true;
+				e.printStackTrace();
+				WiimoteWhiteboard.getLogger().log(Level.SEVERE, "Error on writing to input device", e);
+			}
+		}
+	}
+
+}
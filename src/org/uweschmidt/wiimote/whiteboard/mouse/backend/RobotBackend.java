@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.mouse.backend;
+
+import java.awt.AWTException;
+import java.awt.GraphicsDevice;
+import java.awt.Robot;
+import java.awt.event.InputEvent;
+
+import org.uweschmidt.wiimote.whiteboard.mouse.Mouse;
+
+public class RobotBackend implements CursorBackend {
+	
+	private final Robot r;
+	
+	public RobotBackend(GraphicsDevice screen) throws AWTException {
+		// TODO when screen changes, http://java.sun.com/j2se/1.5.0/docs/api/java/awt/Robot.html#Robot(java.awt.GraphicsDevice)
+		r = new Robot(screen);
+	}
+
+	public void move(double x, double y) {
+		r.mouseMove((int) Math.round(x), (int) Math.round(y));
+	}
+
+	public void press(Mouse button) {
+		r.mousePress(mask(button));
+	}
+
+	public void release(Mouse button) {
+		r.mouseRelease(mask(button));
+	}
+	
+	private static int mask(Mouse button) {
+		return button == Mouse.RIGHT_BUTTON ? InputEvent.BUTTON3_MASK : InputEvent.BUTTON1_MASK;
+	}
+
+}
@@ -25,29 +25,47 @@
 
 package org.uweschmidt.wiimote.whiteboard.mouse.rightclick;
 
-import java.awt.Point;
+import java.awt.geom.Point2D;
 
+import org.uweschmidt.wiimote.whiteboard.FrameClock;
 import org.uweschmidt.wiimote.whiteboard.mouse.Mouse;
 import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
+import org.uweschmidt.wiimote.whiteboard.util.TimerWheel;
 
 public abstract class AbstractRightClick implements RightClickStrategy {
 
 	private long lightStartTime = 0;
-	private Point lightStartPoint = null;
+	private final Point2D lightStartPoint = new Point2D.Double();
+	private boolean lightStarted = false;
 	private boolean active = false;
+	// fires the right click on time even if no frame arrives then, only
+	// rescheduled when it's due, not on every move of the light
+	private final TimerWheel.Timeout dwell = new TimerWheel.Timeout(new Runnable() {
+		public void run() {
+			if (!Mouse.isCursorControl()) return;
+			// same conditions as for the calls of trigger() by the cursor control strategies
+			if (lightStarted && WWPreferences.getPreferences().isLeftClick() && WWPreferences.getPreferences().isRightClick() && !trigger())
+				Mouse.schedule(dwell, lightStartTime + WWPreferences.getPreferences().getRightClickDelay() + 1 - FrameClock.frameMillis());
+		}
+	});
 
 	protected abstract void activate();
 	protected abstract void deactivate();
 
-	public void process(Point p) {
+	public void process(Point2D p) {
 		if (p != null) {
 			// reset start point for potential right click
-			if (!active && (lightStartPoint == null || lightStartPoint.distance(p) > WWPreferences.PIXEL_MOVE_TOLERANCE)) {
-				lightStartPoint = p;
-				lightStartTime = System.currentTimeMillis();
+			if (!active && (!lightStarted || lightStartPoint.distance(p) > WWPreferences.PIXEL_MOVE_TOLERANCE)) {
+				// copy, the given point is reused for subsequent frames
+				lightStartPoint.setLocation(p);
+				lightStarted = true;
+				lightStartTime = FrameClock.frameMillis();
+				if (!dwell.isPending())
+					Mouse.schedule(dwell, WWPreferences.getPreferences().getRightClickDelay() + 1);
 			}
 		} else {
-			lightStartPoint = null;
+			lightStarted = false;
+			dwell.cancel();
 			if (active) {
 				active = false;
 				deactivate();
@@ -55,9 +73,15 @@ public abstract class AbstractRightClick implements RightClickStrategy {
 		}
 	}
 
+	public void reset() {
+		dwell.cancel();
+		lightStarted = false;
+		active = false;
+	}
+
 	public boolean trigger() {
 		// light hasn't moved in the same area for long enough to trigger right click
-		if (lightStartPoint != null && System.currentTimeMillis() - lightStartTime > WWPreferences.getPreferences().getRightClickDelay()) {
+		if (lightStarted && FrameClock.frameMillis() - lightStartTime > WWPreferences.getPreferences().getRightClickDelay()) {
 			if (!active) {
 				active = true;
 				Mouse.LEFT_BUTTON.setPressed(false);
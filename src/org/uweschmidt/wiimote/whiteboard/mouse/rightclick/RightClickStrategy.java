@@ -25,11 +25,13 @@
 
 package org.uweschmidt.wiimote.whiteboard.mouse.rightclick;
 
-import java.awt.Point;
+import java.awt.geom.Point2D;
 
 public interface RightClickStrategy {
 	
-	public void process(Point p);
+	public void process(Point2D p);
 	public boolean trigger();
+	// cancels a pending right click without releasing any buttons
+	public void reset();
 	
 }
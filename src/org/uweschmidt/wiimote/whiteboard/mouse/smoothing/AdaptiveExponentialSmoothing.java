@@ -25,7 +25,7 @@
 
 package org.uweschmidt.wiimote.whiteboard.mouse.smoothing;
 
-import java.awt.Point;
+import java.awt.geom.Point2D;
 
 public class AdaptiveExponentialSmoothing implements MouseSmoothingStrategy {
 	
@@ -35,7 +35,7 @@ public class AdaptiveExponentialSmoothing implements MouseSmoothingStrategy {
 	private static final double dAlpha = .1d;
 	
 	private double x, y, dx, dy;
-	private Point last;
+	private double lastX, lastY;
 	
 	public AdaptiveExponentialSmoothing() {
 		reset();
@@ -43,24 +43,25 @@ public class AdaptiveExponentialSmoothing implements MouseSmoothingStrategy {
 
 	public void reset() {
 		x = y = dx = dy = Double.NaN;
-		last = null;
+		lastX = lastY = Double.NaN;
 	}
 
-	public Point translate(Point p) {
+	public Point2D translate(Point2D p) {
 		
 		double alpha = AdaptiveExponentialSmoothing.alpha;
 		
 		// smoothed "velocities" of x and y movements
-		if (last == null) {
+		if (Double.isNaN(lastX)) {
 			dx = dy = 0;
 		} else {
-			dx += dAlpha*((p.getX() - last.getX()) - dx);
-			dy += dAlpha*((p.getY() - last.getY()) - dy);
+			dx += dAlpha*((p.getX() - lastX) - dx);
+			dy += dAlpha*((p.getY() - lastY) - dy);
 			// slow movements => alpha is closer to 0, newer values are less important
 			// faster movements => alpha is closer to ExponentialSmoothing.alpha, newer values are more important 
 			alpha = alpha+.015 - (alpha+.015)*(1/(Math.max(Math.abs(dx), Math.abs(dy))+1));
 		}
-		last = p;
+		lastX = p.getX();
+		lastY = p.getY();
 		
 //		System.out.printf("%d\t%d\t%d\n", System.currentTimeMillis(), p.x, p.y);
 //		System.out.printf("dx = %7.3f, dy = %7.3f, alpha = %5.3f\n", dx, dy, alpha);
@@ -73,7 +74,8 @@ public class AdaptiveExponentialSmoothing implements MouseSmoothingStrategy {
 			x += alpha*(p.getX() - x);
 			y += alpha*(p.getY() - y);
 		}
-		return new Point((int)Math.round(x), (int)Math.round(y));
+		p.setLocation(x, y);
+		return p;
 	}
 
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.mouse.smoothing;
+
+/**
+ * Kalman filter with a constant velocity model (white noise acceleration) for
+ * each axis.
+ */
+public class KalmanSmoothing extends PredictiveSmoothing {
+	
+	public final static String NAME = "Kalman Filter";
+	
+	// variance of the measured positions (px^2)
+	private static final double R = 16;
+	// spectral density of the acceleration (px^2/s^3)
+	private static final double Q = 4e5;
+	// variance of the initial velocity ((px/s)^2)
+	private static final double V0 = 1e6;
+	
+	// state and covariance of both axes
+	private final double[] x = new double[2], v = new double[2];
+	private final double[] p00 = new double[2], p01 = new double[2], p11 = new double[2];
+	
+	public KalmanSmoothing() {
+	}
+	
+	public KalmanSmoothing(double prediction) {
+		super(prediction);
+	}
+	
+	@Override
+	protected void init(double x, double y) {
+		init(0, x);
+		init(1, y);
+	}
+	
+	private void init(int a, double z) {
+		x[a] = z;
+		v[a] = 0;
+		p00[a] = R;
+		p01[a] = 0;
+		p11[a] = V0;
+	}
+	
+	@Override
+	protected void update(double x, double y, double dt) {
+		update(0, x, dt);
+		update(1, y, dt);
+	}
+	
+	private void update(int a, double z, double dt) {
+		// predict
+		x[a] += v[a] * dt;
+		final double q = Q * dt;
+		final double pp00 = p00[a] + dt * (2 * p01[a] + dt * p11[a]) + q * dt * dt / 3;
+		final double pp01 = p01[a] + dt * p11[a] + q * dt / 2;
+		final double pp11 = p11[a] + q;
+		
+		// correct
+		final double s = pp00 + R;
+		final double k0 = pp00 / s, k1 = pp01 / s;
+		final double e = z - x[a];
+		x[a] += k0 * e;
+		v[a] += k1 * e;
+		p00[a] = pp00 - k0 * pp00;
+		p01[a] = pp01 - k0 * pp01;
+		p11[a] = pp11 - k1 * pp01;
+	}
+	
+	@Override
+	protected double getX() {
+		return x[0];
+	}
+	
+	@Override
+	protected double getY() {
+		return x[1];
+	}
+	
+	@Override
+	protected double getVelocityX() {
+		return v[0];
+	}
+	
+	@Override
+	protected double getVelocityY() {
+		return v[1];
+	}
+
+}
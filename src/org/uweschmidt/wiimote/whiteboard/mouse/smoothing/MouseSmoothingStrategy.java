@@ -25,7 +25,7 @@
 
 package org.uweschmidt.wiimote.whiteboard.mouse.smoothing;
 
-import java.awt.Point;
+import java.awt.geom.Point2D;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -33,7 +33,8 @@ public interface MouseSmoothingStrategy {
 	
 	public static final Map<String, Class<? extends MouseSmoothingStrategy>> REGISTERED = new LinkedHashMap<String, Class<? extends MouseSmoothingStrategy>>();
 	
-	public Point translate(Point p);
+	// may update and return the given point instead of creating a new one
+	public Point2D translate(Point2D p);
 	public void reset();
 
 }
@@ -25,13 +25,13 @@
 
 package org.uweschmidt.wiimote.whiteboard.mouse.smoothing;
 
-import java.awt.Point;
+import java.awt.geom.Point2D;
 
 public class NoSmoothing implements MouseSmoothingStrategy {
 	
 	public final static String NAME = "None"; 
 
-	public Point translate(Point p) {
+	public Point2D translate(Point2D p) {
 		return p;
 	}
 	
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.mouse.smoothing;
+
+/**
+ * One Euro Filter (Casiez et al., CHI 2012): a low-pass filter whose cutoff
+ * frequency increases with the speed of the pen, i.e. strong smoothing when
+ * the pen is held still and little lag when it moves fast.
+ */
+public class OneEuroSmoothing extends PredictiveSmoothing {
+	
+	public final static String NAME = "One Euro Filter";
+	
+	// cutoff frequency at rest (Hz)
+	private static final double MIN_CUTOFF = 1;
+	// increase of the cutoff frequency per speed (Hz per px/s)
+	private static final double BETA = .02;
+	// cutoff frequency of the speed (Hz)
+	private static final double D_CUTOFF = 3;
+	
+	private final double[] x = new double[2], dx = new double[2];
+	
+	public OneEuroSmoothing() {
+	}
+	
+	public OneEuroSmoothing(double prediction) {
+		super(prediction);
+	}
+	
+	@Override
+	protected void init(double x, double y) {
+		this.x[0] = x;
+		this.x[1] = y;
+		dx[0] = dx[1] = 0;
+	}
+	
+	@Override
+	protected void update(double x, double y, double dt) {
+		update(0, x, dt);
+		update(1, y, dt);
+	}
+	
+	private void update(int a, double z, double dt) {
+		dx[a] += alpha(D_CUTOFF, dt) * ((z - x[a]) / dt - dx[a]);
+		x[a] += alpha(MIN_CUTOFF + BETA * Math.abs(dx[a]), dt) * (z - x[a]);
+	}
+	
+	private static double alpha(double cutoff, double dt) {
+		final double tau = 1 / (2 * Math.PI * cutoff);
+		return 1 / (1 + tau / dt);
+	}
+	
+	@Override
+	protected double getX() {
+		return x[0];
+	}
+	
+	@Override
+	protected double getY() {
+		return x[1];
+	}
+	
+	@Override
+	protected double getVelocityX() {
+		return dx[0];
+	}
+	
+	@Override
+	protected double getVelocityY() {
+		return dx[1];
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.mouse.smoothing;
+
+import java.awt.geom.Point2D;
+
+import org.uweschmidt.wiimote.whiteboard.FrameClock;
+import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
+
+/**
+ * Smoothing based on a filter that estimates position and velocity of the
+ * pen. The cursor is placed where the pen is expected to be after
+ * {@link WWPreferences#SMOOTHING_PREDICTION} milliseconds, which compensates
+ * (part of) the delay between the pen moving and the cursor following.
+ */
+public abstract class PredictiveSmoothing implements MouseSmoothingStrategy {
+	
+	// longer pauses between points start over (ns)
+	private static final long MAX_GAP = 200000000L;
+	
+	private final double prediction;
+	private boolean started = false;
+	private long last;
+	
+	protected PredictiveSmoothing() {
+		this(WWPreferences.SMOOTHING_PREDICTION / 1000d);
+	}
+	
+	/**
+	 * @param prediction
+	 *            in seconds
+	 */
+	protected PredictiveSmoothing(double prediction) {
+		this.prediction = prediction;
+	}
+
+	public Point2D translate(Point2D p) {
+		return translate(p, FrameClock.frameTime());
+	}
+	
+	/**
+	 * @param time
+	 *            of the point in nanoseconds
+	 */
+	public Point2D translate(Point2D p, long time) {
+		if (!started || time - last > MAX_GAP) {
+			init(p.getX(), p.getY());
+			started = true;
+		} else if (time > last) {
+			update(p.getX(), p.getY(), (time - last) / 1e9);
+		}
+		last = time;
+		p.setLocation(getX() + prediction * getVelocityX(), getY() + prediction * getVelocityY());
+		return p;
+	}
+	
+	public void reset() {
+		started = false;
+	}
+	
+	protected abstract void init(double x, double y);
+	
+	/**
+	 * @param dt
+	 *            time since the previous point in seconds
+	 */
+	protected abstract void update(double x, double y, double dt);
+	
+	protected abstract double getX();
+	protected abstract double getY();
+	// in pixels per second
+	protected abstract double getVelocityX();
+	protected abstract double getVelocityY();
+
+}
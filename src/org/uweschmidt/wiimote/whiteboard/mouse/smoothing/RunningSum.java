@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.mouse.smoothing;
+
+/**
+ * Sum of the last n values, updated in constant time.
+ */
+class RunningSum {
+	
+	// positions are summed in fixed point (1/1024 px), so that the sums stay exact
+	public static final double SCALE = 1024;
+	
+	public static long fix(double position) {
+		return Math.round(position * SCALE);
+	}
+	
+	private final long[] values;
+	private int count = 0, next = 0;
+	private long sum = 0;
+	
+	public RunningSum(int n) {
+		values = new long[n];
+	}
+	
+	public void add(long value) {
+		if (count == values.length)
+			sum -= values[next];
+		else
+			count++;
+		values[next] = value;
+		sum += value;
+		if (++next == values.length)
+			next = 0;
+	}
+	
+	public long getSum() {
+		return sum;
+	}
+	
+	public int getCount() {
+		return count;
+	}
+	
+	public boolean isFull() {
+		return count == values.length;
+	}
+	
+	public void reset() {
+		count = next = 0;
+		sum = 0;
+	}
+
+}
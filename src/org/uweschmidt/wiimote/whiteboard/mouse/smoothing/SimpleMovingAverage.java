@@ -25,39 +25,40 @@
 
 package org.uweschmidt.wiimote.whiteboard.mouse.smoothing;
 
-import java.awt.Point;
-import java.util.LinkedList;
+import java.awt.geom.Point2D;
+
+import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
 
 public class SimpleMovingAverage implements MouseSmoothingStrategy {
 	
 	public final static String NAME = "Simple Moving Average";
 	
-	// TODO allow user to change value
-	private static final int N = 7;
-	private LinkedList<Point> points = new LinkedList<Point>();	
+	private final RunningSum xs, ys;
+	
+	public SimpleMovingAverage() {
+		this(WWPreferences.getPreferences().getSmoothingWindow());
+	}
+	
+	/**
+	 * @param n
+	 *            number of points to average
+	 */
+	public SimpleMovingAverage(int n) {
+		xs = new RunningSum(n);
+		ys = new RunningSum(n);
+	}
 
-	public Point translate(Point p) {
-		return getAverage(p);
+	public Point2D translate(Point2D p) {
+		xs.add(RunningSum.fix(p.getX()));
+		ys.add(RunningSum.fix(p.getY()));
+		final double count = xs.getCount() * RunningSum.SCALE;
+		p.setLocation(xs.getSum() / count, ys.getSum() / count);
+		return p;
 	}
 	
 	public void reset() {
-		if (!points.isEmpty()) points.clear();
+		xs.reset();
+		ys.reset();
 	}
 
-	// XXX inefficient, but shouldn't be an issue here
-	private Point getAverage(Point p) {
-		// add new and remove old
-		points.addLast(p);
-		if (points.size() > N) points.removeFirst();
-		
-		// get average of last N points
-		int x = 0, y = 0;
-		for (Point o : points) {
-			x += o.x;
-			y += o.y;
-		}
-		
-		return new Point(Math.round((float)x / (float)points.size()), Math.round((float)y / (float)points.size()));
-	}	
-
 }
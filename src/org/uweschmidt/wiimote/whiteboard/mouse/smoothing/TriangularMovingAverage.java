@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.mouse.smoothing;
+
+import java.awt.geom.Point2D;
+
+import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
+
+/**
+ * Moving average of a moving average, i.e. the points in the middle of the
+ * window have the highest weights. Smoother than the
+ * {@link SimpleMovingAverage} of the same window, but lags about as much.
+ */
+public class TriangularMovingAverage implements MouseSmoothingStrategy {
+	
+	public final static String NAME = "Triangular Moving Average";
+	
+	// first stage
+	private final RunningSum xs, ys;
+	// second stage, sums of the first stage and their number of points
+	private final RunningSum sx, sy, counts;
+	
+	public TriangularMovingAverage() {
+		this(WWPreferences.getPreferences().getSmoothingWindow());
+	}
+	
+	/**
+	 * @param n
+	 *            number of points to average
+	 */
+	public TriangularMovingAverage(int n) {
+		// both stages together span n points
+		xs = new RunningSum(n / 2 + 1);
+		ys = new RunningSum(n / 2 + 1);
+		sx = new RunningSum((n + 1) / 2);
+		sy = new RunningSum((n + 1) / 2);
+		counts = new RunningSum((n + 1) / 2);
+	}
+
+	public Point2D translate(Point2D p) {
+		xs.add(RunningSum.fix(p.getX()));
+		ys.add(RunningSum.fix(p.getY()));
+		sx.add(xs.getSum());
+		sy.add(ys.getSum());
+		counts.add(xs.getCount());
+		final double count = counts.getSum() * RunningSum.SCALE;
+		p.setLocation(sx.getSum() / count, sy.getSum() / count);
+		return p;
+	}
+	
+	public void reset() {
+		xs.reset();
+		ys.reset();
+		sx.reset();
+		sy.reset();
+		counts.reset();
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.mouse.smoothing;
+
+import java.awt.geom.Point2D;
+
+import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
+
+/**
+ * Moving average with linearly decreasing weights, i.e. the newest of n
+ * points has weight n and the oldest weight 1. Lags less than the
+ * {@link SimpleMovingAverage} of the same window.
+ */
+public class WeightedMovingAverage implements MouseSmoothingStrategy {
+	
+	public final static String NAME = "Weighted Moving Average";
+	
+	private final RunningSum xs, ys;
+	// weighted sums
+	private long wx, wy;
+	
+	public WeightedMovingAverage() {
+		this(WWPreferences.getPreferences().getSmoothingWindow());
+	}
+	
+	/**
+	 * @param n
+	 *            number of points to average
+	 */
+	public WeightedMovingAverage(int n) {
+		xs = new RunningSum(n);
+		ys = new RunningSum(n);
+	}
+
+	public Point2D translate(Point2D p) {
+		wx = add(xs, wx, RunningSum.fix(p.getX()));
+		wy = add(ys, wy, RunningSum.fix(p.getY()));
+		final int count = xs.getCount();
+		final double weights = count * (count + 1) / 2d * RunningSum.SCALE;
+		p.setLocation(wx / weights, wy / weights);
+		return p;
+	}
+	
+	private static long add(RunningSum values, long weighted, long value) {
+		if (values.isFull())
+			// weight of every point decreases by one, the oldest drops out
+			weighted += values.getCount() * value - values.getSum();
+		else
+			weighted += (values.getCount() + 1) * value;
+		values.add(value);
+		return weighted;
+	}
+	
+	public void reset() {
+		xs.reset();
+		ys.reset();
+		wx = wy = 0;
+	}
+
+}
@@ -27,23 +27,39 @@ package org.uweschmidt.wiimote.whiteboard.preferences;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
 import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
+import org.uweschmidt.wiimote.whiteboard.calibration.fusion.CenterWeightedFusion;
+import org.uweschmidt.wiimote.whiteboard.calibration.fusion.FirstDotFusion;
+import org.uweschmidt.wiimote.whiteboard.calibration.fusion.FusionStrategy;
+import org.uweschmidt.wiimote.whiteboard.calibration.fusion.ResidualWeightedFusion;
+import org.uweschmidt.wiimote.whiteboard.calibration.fusion.SizeWeightedFusion;
 import org.uweschmidt.wiimote.whiteboard.gui.PreferencesWindow;
 import org.uweschmidt.wiimote.whiteboard.mouse.DefaultControlStrategy;
 import org.uweschmidt.wiimote.whiteboard.mouse.rightclick.DefaultRightClick;
 import org.uweschmidt.wiimote.whiteboard.mouse.rightclick.DragRightClick;
 import org.uweschmidt.wiimote.whiteboard.mouse.rightclick.RightClickStrategy;
 import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.AdaptiveExponentialSmoothing;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.KalmanSmoothing;
 import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.MouseSmoothingStrategy;
 import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.NoSmoothing;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.OneEuroSmoothing;
 import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.SimpleMovingAverage;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.TriangularMovingAverage;
+import org.uweschmidt.wiimote.whiteboard.mouse.smoothing.WeightedMovingAverage;
 import org.uweschmidt.wiimote.whiteboard.util.Util;
 
 import wiiremotej.IRSensitivitySettings;
@@ -79,10 +95,19 @@ public class WWPreferences {
 		new LocaleWrapper(new Locale("pt"), "Portugu\u00eas"),
 	};
 	
+	public static final int MAX_WIIMOTES = 8;
+	public static final int MAX_SMOOTHING_WINDOW = 30;
 	public static final int WIIMOTES;// = 2;	
 	public static final int PIXEL_MOVE_TOLERANCE;
 	public static final int SHORT_DELAY;
 	public static final int MOUSE_PRESS_DELAY;
+	// cursor is placed where the pen is expected to be this many ms later
+	public static final int SMOOTHING_PREDICTION;
+	// multiple wiimotes: reports within this window (ms) are considered simultaneous
+	public static final int SYNC_WINDOW;
+	// multiple wiimotes: reports older than this (ms) are ignored
+	public static final int SYNC_TIMEOUT;
+	public static final boolean SYNC_EXTRAPOLATE;
 	
 	// max sensitivity according to http://wiibrew.org/index.php?title=Wiimote#Sensitivity_Settings 
 	private static final byte[] MAX_SENSITIVITY_BLOCK1 = new byte[] { 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0x90, 0x00, 0x41 };
@@ -91,6 +116,35 @@ public class WWPreferences {
 	
 	public static final RightClickStrategy RIGHT_CLICK_STRATEGY;
 	public static final List<String> WIIMOTE_BT_ADDRESSES;
+	// existing linux event device (not /dev/uinput) for the cursor (instead of java.awt.Robot)
+	public static final String EVENT_DEVICE;
+	// files to record IR data to / replay IR data from (instead of connecting to wiimotes)
+	public static final String RECORD_FILE;
+	public static final String REPLAY_FILE;
+	public static final double REPLAY_SPEED;
+	public static final boolean REPLAY_LOOP;
+	public static final double CLUSTER_DISTANCE;
+	// max distance (px) of a pen from its predicted position to keep its track
+	public static final double TRACK_DISTANCE;
+	public static final FusionStrategy FUSION_STRATEGY;
+	public static final int SIMULATE;
+	public static final double SIMULATE_RATE;
+	public static final int SIMULATE_PENS;
+	public static final double SIMULATE_JITTER;
+	public static final double SIMULATE_DROPOUTS;
+	// send TUIO with NetUtil's OSC classes instead of the built-in encoder
+	public static final boolean TUIO_NETUTIL;
+	// additional TUIO receivers (host:port) that get the same UDP packets
+	public static final List<String> TUIO_TARGETS;
+	// TUIO stream for TCP and WebSocket clients on these ports (0: disabled)
+	public static final int TUIO_TCP_PORT;
+	public static final int TUIO_WEBSOCKET_PORT;
+	// origins of web pages (besides local ones) that may connect to the WebSocket port
+	public static final List<String> TUIO_WEBSOCKET_ORIGINS;
+	// TUIO 1.1 (2Dcur) or TUIO 2.0 (ptr and bnd with the dot sizes)
+	public static final int TUIO_VERSION;
+	// only send changes, and everything at least every this many ms (0: everything every frame)
+	public static final int TUIO_KEEP_ALIVE;
 	
 	static {		
 
@@ -112,6 +166,26 @@ public class WWPreferences {
 		} catch (Exception e) {}
 		MOUSE_PRESS_DELAY = mouseDelay < 0 ? 0 : mouseDelay;
 		
+		int prediction = -1;
+		try {
+			prediction = Integer.parseInt(System.getProperty("org.uweschmidt.wiimote.whiteboard.prediction"));
+		} catch (Exception e) {}
+		SMOOTHING_PREDICTION = prediction < 0 ? 0 : prediction;
+		
+		int syncWindow = -1;
+		try {
+			syncWindow = Integer.parseInt(System.getProperty("org.uweschmidt.wiimote.whiteboard.syncWindow"));
+		} catch (Exception e) {}
+		SYNC_WINDOW = syncWindow < 0 ? 4 : syncWindow;
+		
+		int syncTimeout = -1;
+		try {
+			syncTimeout = Integer.parseInt(System.getProperty("org.uweschmidt.wiimote.whiteboard.syncTimeout"));
+		} catch (Exception e) {}
+		SYNC_TIMEOUT = syncTimeout <= 0 ? 100 : syncTimeout;
+		
+		SYNC_EXTRAPOLATE = !"false".equals(System.getProperty("org.uweschmidt.wiimote.whiteboard.syncExtrapolate"));
+		
 		IRSensitivitySettings sensitivity = new IRSensitivitySettings(MAX_SENSITIVITY_BLOCK1, MAX_SENSITIVITY_BLOCK2);
 		try {
 			String str = System.getProperty("org.uweschmidt.wiimote.whiteboard.sensitivity");
@@ -136,7 +210,7 @@ public class WWPreferences {
 		try {
 			wiimotes = Integer.parseInt(System.getProperty("org.uweschmidt.wiimote.whiteboard.wiimotes"));
 		} catch (Exception e) {}
-		WIIMOTES = wiimotes == 1 || wiimotes == 2 ? wiimotes : 2;
+		WIIMOTES = wiimotes >= 1 && wiimotes <= MAX_WIIMOTES ? wiimotes : 2;
 		
 		List<String> addresses = Collections.emptyList();
 		try {
@@ -155,6 +229,116 @@ public class WWPreferences {
 			}
 		} catch (Exception e) {}
 		RIGHT_CLICK_STRATEGY = rcs;
+		
+		EVENT_DEVICE = System.getProperty("org.uweschmidt.wiimote.whiteboard.eventDevice");
+		
+		RECORD_FILE = System.getProperty("org.uweschmidt.wiimote.whiteboard.record");
+		REPLAY_FILE = System.getProperty("org.uweschmidt.wiimote.whiteboard.replay");
+		
+		double replaySpeed = -1;
+		try {
+			replaySpeed = Double.parseDouble(System.getProperty("org.uweschmidt.wiimote.whiteboard.replaySpeed"));
+		} catch (Exception e) {}
+		REPLAY_SPEED = replaySpeed < 0 ? 1 : replaySpeed;
+		
+		REPLAY_LOOP = "true".equals(System.getProperty("org.uweschmidt.wiimote.whiteboard.replayLoop"));
+		
+		double clusterDistance = -1;
+		try {
+			clusterDistance = Double.parseDouble(System.getProperty("org.uweschmidt.wiimote.whiteboard.clusterDistance"));
+		} catch (Exception e) {}
+		CLUSTER_DISTANCE = clusterDistance <= 0 ? 100 : clusterDistance;
+		
+		double trackDistance = -1;
+		try {
+			trackDistance = Double.parseDouble(System.getProperty("org.uweschmidt.wiimote.whiteboard.trackDistance"));
+		} catch (Exception e) {}
+		TRACK_DISTANCE = trackDistance <= 0 ? 150 : trackDistance;
+		
+		// the basic IR reports of the Wiimotes have no dot sizes, so "size" isn't the default
+		FusionStrategy fusion = new CenterWeightedFusion();
+		try {
+			String str = System.getProperty("org.uweschmidt.wiimote.whiteboard.fusion");
+			if (str != null) {
+				if (str.equals("size"))
+					fusion = new SizeWeightedFusion();
+				else if (str.equals("first"))
+					fusion = new FirstDotFusion();
+				else if (str.equals("residual"))
+					fusion = new ResidualWeightedFusion();
+			}
+		} catch (Exception e) {}
+		FUSION_STRATEGY = fusion;
+		
+		int simulate = 0;
+		try {
+			simulate = Integer.parseInt(System.getProperty("org.uweschmidt.wiimote.whiteboard.simulate"));
+		} catch (Exception e) {}
+		SIMULATE = Math.max(0, simulate);
+		
+		double simulateRate = -1;
+		try {
+			simulateRate = Double.parseDouble(System.getProperty("org.uweschmidt.wiimote.whiteboard.simulateRate"));
+		} catch (Exception e) {}
+		SIMULATE_RATE = simulateRate < 0 ? 100 : simulateRate;
+		
+		int simulatePens = 0;
+		try {
+			simulatePens = Integer.parseInt(System.getProperty("org.uweschmidt.wiimote.whiteboard.simulatePens"));
+		} catch (Exception e) {}
+		SIMULATE_PENS = simulatePens >= 1 && simulatePens <= 4 ? simulatePens : 1;
+		
+		double simulateJitter = -1;
+		try {
+			simulateJitter = Double.parseDouble(System.getProperty("org.uweschmidt.wiimote.whiteboard.simulateJitter"));
+		} catch (Exception e) {}
+		SIMULATE_JITTER = simulateJitter < 0 ? 1 : simulateJitter;
+		
+		double simulateDropouts = -1;
+		try {
+			simulateDropouts = Double.parseDouble(System.getProperty("org.uweschmidt.wiimote.whiteboard.simulateDropouts"));
+		} catch (Exception e) {}
+		SIMULATE_DROPOUTS = simulateDropouts < 0 || simulateDropouts > 1 ? .02 : simulateDropouts;
+		
+		TUIO_NETUTIL = "true".equals(System.getProperty("org.uweschmidt.wiimote.whiteboard.tuioNetUtil"));
+		
+		List<String> targets = Collections.emptyList();
+		try {
+			String str = System.getProperty("org.uweschmidt.wiimote.whiteboard.tuioTargets");
+			if (str != null && str.trim().length() > 0) {
+				targets = Collections.unmodifiableList(Arrays.asList(str.trim().split("\\s*,\\s*")));
+			}
+		} catch (Exception e) {}
+		TUIO_TARGETS = targets;
+		
+		int tuioTcpPort = 0;
+		try {
+			tuioTcpPort = Integer.parseInt(System.getProperty("org.uweschmidt.wiimote.whiteboard.tuioTcpPort"));
+		} catch (Exception e) {}
+		TUIO_TCP_PORT = tuioTcpPort > 0 && tuioTcpPort < 65536 ? tuioTcpPort : 0;
+		
+		int tuioWebSocketPort = 0;
+		try {
+			tuioWebSocketPort = Integer.parseInt(System.getProperty("org.uweschmidt.wiimote.whiteboard.tuioWebSocketPort"));
+		} catch (Exception e) {}
+		TUIO_WEBSOCKET_PORT = tuioWebSocketPort > 0 && tuioWebSocketPort < 65536 ? tuioWebSocketPort : 0;
+		
+		List<String> origins = Collections.emptyList();
+		try {
+			String str = System.getProperty("org.uweschmidt.wiimote.whiteboard.tuioWebSocketOrigins");
+			if (str != null && str.trim().length() > 0) {
+				origins = Collections.unmodifiableList(Arrays.asList(str.trim().split("\\s*,\\s*")));
+			}
+		} catch (Exception e) {}
+		TUIO_WEBSOCKET_ORIGINS = origins;
+		
+		TUIO_VERSION = "2".equals(System.getProperty("org.uweschmidt.wiimote.whiteboard.tuioVersion")) ? 2 : 1;
+		
+		int tuioKeepAlive = 0;
+		try {
+			tuioKeepAlive = Integer.parseInt(System.getProperty("org.uweschmidt.wiimote.whiteboard.tuioKeepAlive"));
+		} catch (Exception e) {}
+		TUIO_KEEP_ALIVE = Math.max(0, tuioKeepAlive);
 	}
 	
 	private static final String RIGHT_CLICK_DELAY = "rightClickDelay";
@@ -164,6 +348,7 @@ public class WWPreferences {
 	private static final String CHECK_FOR_UPDATES = "checkForUpdates";
 //	private static final String MOUSE_MOVE_THRESHOLD = "mouseMoveThreshold";
 	private static final String MOUSE_SMOOTHING = "mouseSmoothing";
+	private static final String SMOOTHING_WINDOW = "smoothingWindow";
 	private static final String TUIO_ENABLED = "tuioEnabled";
 	private static final String TUIO_PORT = "tuioPort";
 	private static final String TUIO_HOST = "tuioHost";
@@ -177,14 +362,102 @@ public class WWPreferences {
 		public void preferencesChanged();
 	}	
 	
+	/**
+	 * Immutable copy of all settings. It is replaced as a whole for every
+	 * change, so the getters (some of which are called for every frame) just
+	 * read final fields instead of going through {@link Preferences}.
+	 */
+	private static final class Settings {
+		// raw values as stored by Preferences
+		private final Map<String, String> values;
+		private final boolean leftClick, rightClick, lowBatteryWarning, checkForUpdates, tuioEnabled, assistDoubleClicks;
+		private final long rightClickDelay;
+		private final int smoothingWindow, tuioPort;
+		private final String mouseSmoothing, tuioHost, cursorControl, language;
+		
+		Settings(Map<String, String> values) {
+			this.values = values;
+			leftClick = getBoolean(LEFT_CLICK, true);
+			rightClick = getBoolean(RIGHT_CLICK, true);
+			rightClickDelay = getLong(RIGHT_CLICK_DELAY, 1000L);
+			lowBatteryWarning = getBoolean(LOW_BATTERY_WARNING, true);
+			checkForUpdates = getBoolean(CHECK_FOR_UPDATES, true);
+			mouseSmoothing = get(MOUSE_SMOOTHING, AdaptiveExponentialSmoothing.class.getName());
+			smoothingWindow = Math.max(1, Math.min(MAX_SMOOTHING_WINDOW, (int) getLong(SMOOTHING_WINDOW, 7)));
+			tuioEnabled = getBoolean(TUIO_ENABLED, false);
+			tuioPort = (int) getLong(TUIO_PORT, 3333);
+			tuioHost = get(TUIO_HOST, "localhost");
+			cursorControl = get(CURSOR_CONTROL, DefaultControlStrategy.class.getName());
+			assistDoubleClicks = getBoolean(ASSIST_DOUBLE_CLICKS, false);
+			language = get(LANGUAGE, "");
+		}
+		
+		Settings with(String key, String value) {
+			final Map<String, String> v = new HashMap<String, String>(values);
+			v.put(key, value);
+			return new Settings(v);
+		}
+		
+		// same parsing as Preferences
+		
+		private String get(String key, String def) {
+			final String value = values.get(key);
+			return value != null ? value : def;
+		}
+		
+		private boolean getBoolean(String key, boolean def) {
+			final String value = values.get(key);
+			if ("true".equalsIgnoreCase(value)) return true;
+			if ("false".equalsIgnoreCase(value)) return false;
+			return def;
+		}
+		
+		private long getLong(String key, long def) {
+			try {
+				return Long.parseLong(values.get(key));
+			} catch (NumberFormatException e) {
+				return def;
+			}
+		}
+	}
+	
 	private final Set<PreferencesListener> listener = new HashSet<PreferencesListener>();
 	private final static WWPreferences instance = new WWPreferences();	
 	private final Preferences settings;
+	private volatile Settings snapshot;
+	// changes are written to the backing store one after another by this thread
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			final Thread t = new Thread(r, "Preferences Writer");
+			t.setDaemon(true);
+			return t;
+		}
+	});
 	
 	private WWPreferences() {
 		settings = Preferences.userNodeForPackage(WiimoteWhiteboard.class);
+		final Map<String, String> values = new HashMap<String, String>();
+		try {
+			for (String key : settings.keys())
+				values.put(key, settings.get(key, null));
+		} catch (BackingStoreException e) {
+			e.printStackTrace();
+			WiimoteWhiteboard.getLogger().log(Level.WARNING, "Error reading preferences", e);
+		}
+		snapshot = new Settings(values);
+		Runtime.getRuntime().addShutdownHook(new Thread("Preferences Flush") {
+			@Override
+			public void run() {
+				flush();
+			}
+		});
 		MouseSmoothingStrategy.REGISTERED.put(NoSmoothing.NAME, NoSmoothing.class);
 		MouseSmoothingStrategy.REGISTERED.put(SimpleMovingAverage.NAME, SimpleMovingAverage.class);
+		MouseSmoothingStrategy.REGISTERED.put(WeightedMovingAverage.NAME, WeightedMovingAverage.class);
+		MouseSmoothingStrategy.REGISTERED.put(TriangularMovingAverage.NAME, TriangularMovingAverage.class);
+		MouseSmoothingStrategy.REGISTERED.put(AdaptiveExponentialSmoothing.NAME, AdaptiveExponentialSmoothing.class);
+		MouseSmoothingStrategy.REGISTERED.put(KalmanSmoothing.NAME, KalmanSmoothing.class);
+		MouseSmoothingStrategy.REGISTERED.put(OneEuroSmoothing.NAME, OneEuroSmoothing.class);
 	}
 	
 	public static WWPreferences getPreferences() {
@@ -192,11 +465,52 @@ public class WWPreferences {
 	}
 	
 	public void reset() {
+		synchronized (this) {
+			snapshot = new Settings(new HashMap<String, String>());
+			writer.execute(new Runnable() {
+				public void run() {
+					try {
+						settings.clear();
+					} catch (BackingStoreException e) {
+						e.printStackTrace();
+						WiimoteWhiteboard.getLogger().log(Level.WARNING, "Error resetting preferences", e);
+					}
+				}
+			});
+		}
+		notifyListener();
+	}
+	
+	/**
+	 * Writes all changes to the backing store, waits at most one second.
+	 */
+	public void flush() {
 		try {
-			settings.clear();
-			notifyListener();
-		} catch (BackingStoreException e) {
+			writer.submit(new Runnable() {
+				public void run() {
+					try {
+						settings.flush();
+					} catch (BackingStoreException e) {
+						e.printStackTrace();
+						WiimoteWhiteboard.getLogger().log(Level.WARNING, "Error writing preferences", e);
+					}
+				}
+			}).get(1, TimeUnit.SECONDS);
+		} catch (Exception e) {
 			e.printStackTrace();
+			WiimoteWhiteboard.getLogger().log(Level.WARNING, "Preferences might not have been written", e);
+		}
+	}
+	
+	// the new value is visible immediately, the backing store is updated later
+	private void put(final String key, final String value) {
+		synchronized (this) {
+			snapshot = snapshot.with(key, value);
+			writer.execute(new Runnable() {
+				public void run() {
+					settings.put(key, value);
+				}
+			});
 		}
 	}
 	
@@ -222,47 +536,47 @@ public class WWPreferences {
 	 */	
 	
 	public boolean isLeftClick() {
-		return settings.getBoolean(LEFT_CLICK, true);
+		return snapshot.leftClick;
 	}
 
 	public void setLeftClick(boolean leftClick) {
-		settings.putBoolean(LEFT_CLICK, leftClick);
+		put(LEFT_CLICK, String.valueOf(leftClick));
 		notifyListener();
 	}
 
 	public boolean isRightClick() {
-		return settings.getBoolean(RIGHT_CLICK, true);
+		return snapshot.rightClick;
 	}
 
 	public void setRightClick(boolean rightClick) {
-		settings.putBoolean(RIGHT_CLICK, rightClick);
+		put(RIGHT_CLICK, String.valueOf(rightClick));
 		notifyListener();
 	}
 
 	public long getRightClickDelay() {
-		return settings.getLong(RIGHT_CLICK_DELAY, 1000L);
+		return snapshot.rightClickDelay;
 	}
 
 	public void setRightClickDelay(long rightClickDelay) {
-		settings.putLong(RIGHT_CLICK_DELAY, rightClickDelay);
+		put(RIGHT_CLICK_DELAY, String.valueOf(rightClickDelay));
 		notifyListener();
 	}
 	
 	public boolean isLowBatteryWarning() {
-		return settings.getBoolean(LOW_BATTERY_WARNING, true);
+		return snapshot.lowBatteryWarning;
 	}
 	
 	public void setLowBatteryWarning(boolean lowBatteryWarning) {
-		settings.putBoolean(LOW_BATTERY_WARNING, lowBatteryWarning);
+		put(LOW_BATTERY_WARNING, String.valueOf(lowBatteryWarning));
 		notifyListener();
 	}
 	
 	public boolean checkForUpdates() {
-		return settings.getBoolean(CHECK_FOR_UPDATES, true);
+		return snapshot.checkForUpdates;
 	}
 	
 	public void setCheckForUpdates(boolean checkForUpdates) {
-		settings.putBoolean(CHECK_FOR_UPDATES, checkForUpdates);
+		put(CHECK_FOR_UPDATES, String.valueOf(checkForUpdates));
 		notifyListener();
 	}
 	
@@ -276,39 +590,53 @@ public class WWPreferences {
 //	}
 	
 	public String getMouseSmoothing() {
-		return settings.get(MOUSE_SMOOTHING, AdaptiveExponentialSmoothing.class.getName());
+		return snapshot.mouseSmoothing;
 	}
 
 	public void setMouseSmoothing(String mouseSmoothing) {
 		if (!getMouseSmoothing().equals(mouseSmoothing)) {
-			settings.put(MOUSE_SMOOTHING, mouseSmoothing);
+			put(MOUSE_SMOOTHING, mouseSmoothing);
+			notifyListener();
+		}
+	}
+	
+	/**
+	 * @return number of points the moving averages are taken over
+	 */
+	public int getSmoothingWindow() {
+		return snapshot.smoothingWindow;
+	}
+	
+	public void setSmoothingWindow(int smoothingWindow) {
+		if (getSmoothingWindow() != smoothingWindow) {
+			put(SMOOTHING_WINDOW, String.valueOf(smoothingWindow));
 			notifyListener();
 		}
 	}
 	
 	public boolean isTuioEnabled() {
-		return settings.getBoolean(TUIO_ENABLED, false);
+		return snapshot.tuioEnabled;
 	}
 	
 	public void setTuioEnabled(boolean tuioEnabled) {
-		settings.putBoolean(TUIO_ENABLED, tuioEnabled);
+		put(TUIO_ENABLED, String.valueOf(tuioEnabled));
 		notifyListener();
 	}
 	
 	public int getTuioPort() {
-		return settings.getInt(TUIO_PORT, 3333);
+		return snapshot.tuioPort;
 	}
 	
 	public void setTuioPort(int tuioPort) {
-		settings.putInt(TUIO_PORT, tuioPort);
+		put(TUIO_PORT, String.valueOf(tuioPort));
 	}
 	
 	public String getTuioHost() {
-		return settings.get(TUIO_HOST, "localhost");
+		return snapshot.tuioHost;
 	}
 	
 	public void setTuioHost(String tuioHost) {
-		settings.put(TUIO_HOST, tuioHost);
+		put(TUIO_HOST, tuioHost);
 	}
 	
 //	public int getNumberOfWiimotes() {
@@ -323,32 +651,32 @@ public class WWPreferences {
 //	}
 	
 	public String getCursorControl() {
-		return settings.get(CURSOR_CONTROL, DefaultControlStrategy.class.getName());
+		return snapshot.cursorControl;
 	}
 
 	public void setCursorControl(String cursorControl) {
-		settings.put(CURSOR_CONTROL, cursorControl);
+		put(CURSOR_CONTROL, cursorControl);
 		notifyListener();
 	}
 	
 	public boolean assistDoubleClicks() {
-		return settings.getBoolean(ASSIST_DOUBLE_CLICKS, false);
+		return snapshot.assistDoubleClicks;
 	}
 	
 	public void setAssistDoubleClicks(boolean assistDoubleClicks) {
-		settings.putBoolean(ASSIST_DOUBLE_CLICKS, assistDoubleClicks);
+		put(ASSIST_DOUBLE_CLICKS, String.valueOf(assistDoubleClicks));
 		notifyListener();
 	}
 	
 	public void setLanguage(String language) {
 		if (!getLanguage().equals(language)) {
-			settings.put(LANGUAGE, language);
+			put(LANGUAGE, language);
 			notifyListener();
 		}
 	}
 	
 	public String getLanguage() {
-		return settings.get(LANGUAGE, "");
+		return snapshot.language;
 	}
 
 	
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+import org.uweschmidt.wiimote.whiteboard.FrameClock;
+import org.uweschmidt.wiimote.whiteboard.WiimoteDataHandler;
+import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
+import org.uweschmidt.wiimote.whiteboard.ds.Wiimote;
+
+/**
+ * Feeds IR reports recorded by {@link TraceRecorder} to the
+ * {@link WiimoteDataHandler} as if they came from the Wiimotes, either at the
+ * original speed or accelerated.
+ */
+public class ReplaySource implements IRSource, Runnable {
+	
+	private static final int SLOTS = TraceFormat.SLOTS;
+	
+	private final WiimoteDataHandler dh;
+	private final File f;
+	private final double speed;
+	private final boolean loop;
+	private final double[] x = new double[SLOTS], y = new double[SLOTS], size = new double[SLOTS];
+	private volatile boolean running = false;
+	private Thread thread = null;
+	
+	/**
+	 * @param speed
+	 *            1 for original speed, 0 for as fast as possible
+	 */
+	public ReplaySource(WiimoteDataHandler dh, File f, double speed, boolean loop) {
+		this.dh = dh;
+		this.f = f;
+		this.speed = speed;
+		this.loop = loop;
+	}
+	
+	public synchronized void start() {
+		if (thread != null) return;
+		running = true;
+		thread = new Thread(this, "IR Replay");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	public synchronized void stop() {
+		running = false;
+		if (thread != null)
+			thread.interrupt();
+		thread = null;
+	}
+	
+	public void run() {
+		try {
+			final RandomAccessFile file = new RandomAccessFile(f, "r");
+			try {
+				replay(file.getChannel());
+			} finally {
+				file.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			WiimoteWhiteboard.getLogger().log(Level.SEVERE, "Error on replaying IR data", e);
+		}
+	}
+	
+	private void replay(FileChannel channel) throws IOException {
+		final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, TraceFormat.HEADER);
+		if (header.getInt() != TraceFormat.MAGIC || header.getInt() != TraceFormat.VERSION || header.getInt() != SLOTS || header.getInt() != TraceFormat.RECORD) {
+			WiimoteWhiteboard.getLogger().severe(String.format("%s is not a valid IR trace.", f));
+			return;
+		}
+		
+		final String[] addresses = TraceFormat.getAddresses(header);
+		final Wiimote[] wiimotes = new Wiimote[addresses.length];
+		for (int r = 0; r < addresses.length; r++)
+			if (addresses[r] != null)
+				wiimotes[r] = dh.addWiimote(this, addresses[r]);
+		
+		final long records = Math.min(header.getLong(TraceFormat.COUNT), (channel.size() - TraceFormat.HEADER) / TraceFormat.RECORD);
+		WiimoteWhiteboard.getLogger().info(String.format("Replaying %d IR reports from %s.", records, f));
+		
+		// accelerated replays run on a clock of their own, so clicks and smoothing see the recorded timing
+		final FrameClock.Manual clock = speed != 1 ? new FrameClock.Manual(FrameClock.now()) : null;
+		final FrameClock previous = FrameClock.get();
+		if (clock != null)
+			FrameClock.set(clock);
+		try {
+			do {
+				final long begin = System.nanoTime();
+				final long clockBegin = clock != null ? clock.nanoTime() : 0;
+				MappedByteBuffer chunk = null;
+				for (long n = 0; n < records && running; n++) {
+					if (chunk == null || !chunk.hasRemaining()) {
+						final long pos = TraceFormat.HEADER + n * TraceFormat.RECORD;
+						chunk = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(TraceFormat.CHUNK, (records - n) * TraceFormat.RECORD));
+					}
+					final long time = chunk.getLong();
+					final int remote = chunk.getInt() - 1;
+					final int visible = chunk.getInt();
+					for (int i = 0; i < SLOTS; i++) {
+						x[i] = (visible & 1 << i) != 0 ? chunk.getFloat() : skip(chunk);
+						y[i] = chunk.getFloat();
+						size[i] = chunk.getFloat();
+					}
+					// end of a trace that wasn't closed
+					if (remote < 0) break;
+					
+					if (speed > 0) {
+						final long due = begin + (long) (time / speed);
+						long delay;
+						while ((delay = due - System.nanoTime()) > 0 && running)
+							LockSupport.parkNanos(delay);
+					}
+					if (clock != null)
+						clock.set(clockBegin + time);
+					if (remote < wiimotes.length && wiimotes[remote] != null)
+						dh.reportIR(wiimotes[remote], FrameClock.now(), x, y, size);
+				}
+			} while (loop && running);
+		} finally {
+			// the system clock lags behind the replayed time, pending timeouts fire once it catches up
+			if (clock != null)
+				FrameClock.set(previous);
+		}
+	}
+	
+	// not visible
+	private static double skip(MappedByteBuffer chunk) {
+		chunk.getFloat();
+		return Double.NaN;
+	}
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.source;
+
+import java.awt.Rectangle;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+import javax.media.jai.PerspectiveTransform;
+
+import org.uweschmidt.wiimote.whiteboard.FrameClock;
+import org.uweschmidt.wiimote.whiteboard.WiimoteDataHandler;
+import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
+import org.uweschmidt.wiimote.whiteboard.calibration.Homography;
+import org.uweschmidt.wiimote.whiteboard.calibration.WiimoteCalibration;
+import org.uweschmidt.wiimote.whiteboard.calibration.WiimoteCalibration.CalibrationEvent;
+import org.uweschmidt.wiimote.whiteboard.calibration.WiimoteCalibration.CalibrationEventListener;
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+import org.uweschmidt.wiimote.whiteboard.ds.Wiimote;
+
+/**
+ * Simulates a number of Wiimotes that watch pens drawing on the screen:
+ * strokes of 0.8s along Lissajous curves with pauses of 0.2s, where the first
+ * pen draws all the time and every further pen only now and then. Each
+ * Wiimote sees the screen from a slightly different perspective, its
+ * calibration is loaded whenever the screen changes. Dot positions are
+ * disturbed by gaussian sensor jitter and single dots drop out at random.
+ * <p>
+ * The reports of all Wiimotes are interleaved evenly, each Wiimote reports at
+ * the given rate.
+ */
+public class SyntheticSource implements IRSource, Runnable, CalibrationEventListener {
+	
+	private static final int SLOTS = IRFrame.SLOTS;
+	
+	private final WiimoteDataHandler dh;
+	private final WiimoteCalibration calibration;
+	private final int remotes, pens;
+	private final double rate, jitter, dropouts;
+	private final String[] addresses;
+	// camera corners of each remote, for the corners of the screen
+	private final double[][] corners;
+	private final Homography[] toCamera;
+	
+	private final Random random = new Random();
+	private final double[] u = new double[SLOTS], v = new double[SLOTS];
+	private final boolean[] down = new boolean[SLOTS];
+	private final double[] x = new double[SLOTS], y = new double[SLOTS], size = new double[SLOTS];
+	private volatile boolean running = false;
+	private Thread thread = null;
+	
+	/**
+	 * @param calibration
+	 *            receives the calibration of the simulated Wiimotes, may be
+	 *            null
+	 * @param rate
+	 *            reports per second of each Wiimote, 0 for as fast as possible
+	 * @param jitter
+	 *            standard deviation of the dot positions in camera pixels
+	 * @param dropouts
+	 *            probability that a dot is missing from a report
+	 */
+	public SyntheticSource(WiimoteDataHandler dh, WiimoteCalibration calibration, int remotes, double rate, int pens, double jitter, double dropouts) {
+		this.dh = dh;
+		this.calibration = calibration;
+		this.remotes = remotes;
+		this.rate = rate;
+		this.pens = Math.min(pens, SLOTS);
+		this.jitter = jitter;
+		this.dropouts = dropouts;
+		
+		addresses = new String[remotes];
+		corners = new double[remotes][];
+		toCamera = new Homography[remotes];
+		for (int r = 0; r < remotes; r++) {
+			addresses[r] = String.format("SIMULATED%03d", r+1);
+			final double o = .02 * (r % 5);
+			final double[] c = corners[r] = new double[] { .1+o, .1, .9, .12+o, .88-o, .9, .12, .88-o };
+			toCamera[r] = new Homography(PerspectiveTransform.getSquareToQuad(c[0], c[1], c[2], c[3], c[4], c[5], c[6], c[7]));
+		}
+		
+		if (calibration != null)
+			calibration.addCalibrationEventListener(this);
+	}
+	
+	public synchronized void start() {
+		if (thread != null) return;
+		running = true;
+		thread = new Thread(this, "IR Simulation");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	public synchronized void stop() {
+		running = false;
+		if (thread != null)
+			thread.interrupt();
+		thread = null;
+	}
+	
+	public void run() {
+		final Wiimote[] wiimotes = new Wiimote[remotes];
+		int n = 0;
+		while (n < remotes && (wiimotes[n] = dh.addWiimote(this, addresses[n])) != null)
+			n++;
+		if (n == 0) return;
+		WiimoteWhiteboard.getLogger().info(String.format(Locale.ENGLISH, "Simulating %d Wiimote(s) with %d pen(s) at %.0f reports/s each.", n, pens, rate));
+		
+		// reports of the remotes take turns
+		final long period = rate > 0 ? (long) (1e9 / rate / n) : 0;
+		final long begin = System.nanoTime();
+		long due = begin;
+		for (long k = 0; running; k++) {
+			final int r = (int) (k % n);
+			if (period > 0) {
+				due += period;
+				long delay;
+				while ((delay = due - System.nanoTime()) > 0 && running)
+					LockSupport.parkNanos(delay);
+			}
+			final long time = System.nanoTime();
+			generate(r, (time - begin) / 1e9);
+			dh.reportIR(wiimotes[r], FrameClock.now(), x, y, size);
+		}
+	}
+	
+	private void generate(int r, double t) {
+		for (int p = 0; p < pens; p++) {
+			down[p] = t % 1 < .8 && (p == 0 || (long) t % (p + 2) == p + 1);
+			u[p] = .5 + .4 * Math.sin(2 * Math.PI * (.3 + .1 * p) * t);
+			v[p] = .5 + .4 * Math.sin(2 * Math.PI * (.4 - .07 * p) * t + p);
+		}
+		toCamera[r].transform(u, v, u, v, pens);
+		for (int i = 0; i < SLOTS; i++) {
+			x[i] = Double.NaN;
+			if (i >= pens || !down[i] || random.nextDouble() < dropouts) continue;
+			// resolution of the camera is 1024x768
+			final double cx = Math.round((u[i] + jitter / 1023 * random.nextGaussian()) * 1023) / 1023.0;
+			final double cy = Math.round((v[i] + jitter / 767 * random.nextGaussian()) * 767) / 767.0;
+			if (cx < 0 || cx > 1 || cy < 0 || cy > 1) continue;
+			x[i] = cx;
+			y[i] = cy;
+			size[i] = (2 + random.nextInt(3)) / 15.0;
+		}
+	}
+	
+	/**
+	 * @return calibration of all simulated Wiimotes for the given screen
+	 *         bounds in the file format of {@link WiimoteCalibration}
+	 */
+	public String getCalibration(Rectangle bounds) {
+		final StringBuilder sb = new StringBuilder();
+		final double[] screen = { bounds.x, bounds.y, bounds.x+bounds.width, bounds.y, bounds.x+bounds.width, bounds.y+bounds.height, bounds.x, bounds.y+bounds.height };
+		for (int r = 0; r < remotes; r++) {
+			sb.append(addresses[r]);
+			for (int i = 0; i < 4; i++)
+				sb.append(String.format(Locale.ENGLISH, "\n%f %f %.0f %.0f", corners[r][i*2], corners[r][i*2+1], screen[i*2], screen[i*2+1]));
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+	
+	public void calibrationEvent(CalibrationEvent e) {
+		if (e == CalibrationEvent.SCREEN_CHANGED) {
+			try {
+				calibration.load(new ByteArrayInputStream(getCalibration(calibration.getScreen().getDefaultConfiguration().getBounds()).getBytes()));
+			} catch (IOException ex) {
+				ex.printStackTrace();
+				WiimoteWhiteboard.getLogger().log(Level.WARNING, "Error on loading calibration of simulated Wiimotes", ex);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.source;
+
+import java.nio.ByteBuffer;
+
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+
+/**
+ * Binary format of recorded IR reports: a header followed by fixed-size
+ * records, big-endian. The file is not truncated after the last record,
+ * since a mapped file can't be truncated on all platforms.
+ * <p>
+ * Header ({@link #HEADER} bytes): magic number, version, number of slots,
+ * record size, number of records (long, at {@link #COUNT}), then the
+ * Bluetooth address of each remote ({@link #ADDRESS} bytes each, ASCII,
+ * zero-padded, from {@link #ADDRESSES} on).
+ * <p>
+ * Record ({@link #RECORD} bytes): time in nanoseconds since the first
+ * record (long), remote + 1 (int, 0 marks the end of a trace that wasn't
+ * closed properly), visible slots (int, bit mask), x, y and size of each
+ * slot (floats).
+ */
+public final class TraceFormat {
+	
+	public static final int MAGIC = 0x57574952; // "WWIR"
+	public static final int VERSION = 2;
+	public static final int SLOTS = IRFrame.SLOTS;
+	
+	public static final int HEADER = 256;
+	public static final int COUNT = 16;
+	public static final int ADDRESSES = 32;
+	public static final int ADDRESS = 16;
+	public static final int MAX_REMOTES = (HEADER - ADDRESSES) / ADDRESS;
+	
+	public static final int RECORD = 8 + 4 + 4 + SLOTS * 3 * 4;
+	// records are mapped in chunks of this size
+	public static final int CHUNK = RECORD * 16384;
+	
+	private TraceFormat() {}
+	
+	/**
+	 * @return Bluetooth addresses of the remotes in the given header (null
+	 *         if no report of a remote was recorded)
+	 */
+	public static String[] getAddresses(ByteBuffer header) {
+		final String[] addresses = new String[MAX_REMOTES];
+		for (int r = 0; r < MAX_REMOTES; r++) {
+			final StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < ADDRESS; i++) {
+				final byte b = header.get(ADDRESSES + r * ADDRESS + i);
+				if (b == 0) break;
+				sb.append((char) b);
+			}
+			addresses[r] = sb.length() > 0 ? sb.toString() : null;
+		}
+		return addresses;
+	}
+
+}
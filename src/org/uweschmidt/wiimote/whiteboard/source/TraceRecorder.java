@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+
+import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
+import org.uweschmidt.wiimote.whiteboard.ds.IRFrame;
+
+/**
+ * Appends IR reports to a memory-mapped file, see {@link TraceFormat}. Not
+ * thread-safe, reports should be recorded by a single thread.
+ */
+public class TraceRecorder {
+	
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	private final boolean[] addresses = new boolean[TraceFormat.MAX_REMOTES];
+	
+	private MappedByteBuffer chunk = null;
+	private long records = 0;
+	private long start = -1;
+	private boolean failed = false;
+	
+	public TraceRecorder(File f) throws IOException {
+		file = new RandomAccessFile(f, "rw");
+		file.setLength(0);
+		channel = file.getChannel();
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, TraceFormat.HEADER);
+		header.putInt(TraceFormat.MAGIC);
+		header.putInt(TraceFormat.VERSION);
+		header.putInt(TraceFormat.SLOTS);
+		header.putInt(TraceFormat.RECORD);
+		WiimoteWhiteboard.getLogger().info(String.format("Recording IR data to %s.", f));
+	}
+	
+	/**
+	 * Records the latest report of the given remote of the given frame.
+	 */
+	public void record(int remote, IRFrame frame) {
+		if (failed || remote >= TraceFormat.MAX_REMOTES) return;
+		try {
+			if (!addresses[remote] && frame.getWiimote(remote) != null) {
+				addresses[remote] = true;
+				final String address = frame.getWiimote(remote).getAddress();
+				for (int i = 0; i < TraceFormat.ADDRESS && i < address.length(); i++)
+					header.put(TraceFormat.ADDRESSES + remote * TraceFormat.ADDRESS + i, (byte) address.charAt(i));
+			}
+			if (chunk == null || !chunk.hasRemaining())
+				chunk = channel.map(FileChannel.MapMode.READ_WRITE, TraceFormat.HEADER + records * TraceFormat.RECORD, TraceFormat.CHUNK);
+			
+			final long time = frame.getTime(remote);
+			if (start < 0) start = time;
+			int visible = 0;
+			for (int i = 0; i < TraceFormat.SLOTS; i++)
+				if (frame.isVisible(IRFrame.index(remote, i)))
+					visible |= 1 << i;
+			chunk.putLong(time - start);
+			chunk.putInt(remote + 1);
+			chunk.putInt(visible);
+			for (int i = 0; i < TraceFormat.SLOTS; i++) {
+				final int d = IRFrame.index(remote, i);
+				chunk.putFloat((float) frame.getX(d));
+				chunk.putFloat((float) frame.getY(d));
+				chunk.putFloat((float) frame.getSize(d));
+			}
+			records++;
+			header.putLong(TraceFormat.COUNT, records);
+		} catch (IOException e) {
+			failed = true;
+			e.printStackTrace();
+			WiimoteWhiteboard.getLogger().log(Level.SEVERE, "Error on recording IR data", e);
+		}
+	}
+	
+	public long getRecords() {
+		return records;
+	}
+	
+	/**
+	 * Writes the mapped data to the file and closes it.
+	 */
+	public void close() throws IOException {
+		failed = true;
+		header.force();
+		if (chunk != null)
+			chunk.force();
+		file.close();
+		WiimoteWhiteboard.getLogger().info(String.format("Recorded %d IR reports.", records));
+	}
+
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.tuio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes TUIO 1.1 <code>/tuio/2Dcur</code> and TUIO 2.0 bundles directly into
+ * a reused buffer, without creating any objects per frame (unlike building
+ * <code>OSCBundle</code>s and <code>OSCMessage</code>s).
+ * <p>
+ * A TUIO 1.1 frame is written by {@link #begin()}, {@link #source(byte[])},
+ * {@link #alive(int[], int)}, {@link #set(int, float, float, float, float, float)}
+ * for each cursor, {@link #fseq(int)} and then taken from
+ * {@link #getBuffer()}.
+ * <p>
+ * A TUIO 2.0 frame is written by {@link #begin()},
+ * {@link #frm(int, long, int, int, byte[])}, {@link #ptr} and {@link #bnd}
+ * for each pointer, {@link #alv(int[], int)} and then taken from
+ * {@link #getBuffer()}.
+ */
+public class TuioEncoder {
+	
+	// OSC strings are null terminated and padded to a multiple of 4 bytes
+	private static final byte[] BUNDLE = osc("#bundle");
+	private static final byte[] CUR_2D = osc("/tuio/2Dcur");
+	private static final byte[] SOURCE = osc("source"), SOURCE_TAGS = osc(",ss");
+	private static final byte[] ALIVE = osc("alive");
+	private static final byte[] SET = osc("set"), SET_TAGS = osc(",sifffff");
+	private static final byte[] FSEQ = osc("fseq"), FSEQ_TAGS = osc(",si");
+	private static final byte[] FRM = osc("/tuio2/frm"), FRM_TAGS = osc(",itis");
+	private static final byte[] PTR = osc("/tuio2/ptr"), PTR_TAGS = osc(",iiifffffffffff");
+	private static final byte[] BND = osc("/tuio2/bnd"), BND_TAGS = osc(",iffffff");
+	private static final byte[] ALV = osc("/tuio2/alv");
+	// seconds from 1900 (NTP) to 1970 (Java)
+	private static final long NTP_EPOCH = 2208988800L;
+	// time tag "immediately"
+	private static final long IMMEDIATELY = 1;
+	
+	/**
+	 * Maximum size of an UDP datagram that is unlikely to be fragmented.
+	 */
+	public static final int CAPACITY = 1472;
+	
+	private final ByteBuffer buf;
+	// start of the size field of the current message
+	private int message;
+	
+	public TuioEncoder() {
+		// OSC is big-endian
+		buf = ByteBuffer.allocateDirect(CAPACITY).order(ByteOrder.BIG_ENDIAN);
+	}
+	
+	/**
+	 * @return a null terminated, padded OSC string (ASCII only)
+	 */
+	public static byte[] osc(String s) {
+		final byte[] b = new byte[(s.length() + 4) & ~3];
+		for (int i = 0; i < s.length(); i++)
+			b[i] = (byte) s.charAt(i);
+		return b;
+	}
+	
+	public void begin() {
+		buf.clear();
+		buf.put(BUNDLE);
+		buf.putLong(IMMEDIATELY);
+	}
+	
+	/**
+	 * @param name
+	 *            see {@link #osc(String)}
+	 */
+	public void source(byte[] name) {
+		start(CUR_2D, SOURCE_TAGS);
+		buf.put(SOURCE);
+		buf.put(name);
+		end();
+	}
+	
+	public void alive(int[] sessions, int count) {
+		start(CUR_2D, null);
+		// type tags ",s" and an "i" for every session
+		buf.put((byte) ',');
+		buf.put((byte) 's');
+		ints(count, 2);
+		buf.put(ALIVE);
+		for (int i = 0; i < count; i++)
+			buf.putInt(sessions[i]);
+		end();
+	}
+	
+	/**
+	 * @param x
+	 *            normalized position
+	 * @param vx
+	 *            normalized motion speed
+	 * @param m
+	 *            normalized motion acceleration
+	 */
+	public void set(int session, float x, float y, float vx, float vy, float m) {
+		start(CUR_2D, SET_TAGS);
+		buf.put(SET);
+		buf.putInt(session);
+		buf.putFloat(x);
+		buf.putFloat(y);
+		buf.putFloat(vx);
+		buf.putFloat(vy);
+		buf.putFloat(m);
+		end();
+	}
+	
+	public void fseq(int fseq) {
+		start(CUR_2D, FSEQ_TAGS);
+		buf.put(FSEQ);
+		buf.putInt(fseq);
+		end();
+	}
+	
+	/**
+	 * @param time
+	 *            milliseconds since 1970 ({@link System#currentTimeMillis()})
+	 * @param width
+	 *            sensor (screen) width in pixels
+	 * @param source
+	 *            see {@link #osc(String)}
+	 */
+	public void frm(int frame, long time, int width, int height, byte[] source) {
+		start(FRM, FRM_TAGS);
+		buf.putInt(frame);
+		// OSC time tag: seconds and fraction of a second since 1900
+		buf.putInt((int) (time / 1000 + NTP_EPOCH));
+		buf.putInt((int) ((time % 1000 << 32) / 1000));
+		buf.putInt((width & 0xFFFF) << 16 | (height & 0xFFFF));
+		buf.put(source);
+		end();
+	}
+	
+	/**
+	 * Pointer with velocities and accelerations.
+	 * 
+	 * @param x
+	 *            normalized position
+	 * @param radius
+	 *            normalized radius
+	 * @param press
+	 *            pressure, 0..1
+	 * @param vx
+	 *            normalized motion speed
+	 */
+	public void ptr(int session, int type, int component, float x, float y, float radius, float press, float vx, float vy, float vp, float m, float mp) {
+		start(PTR, PTR_TAGS);
+		buf.putInt(session);
+		buf.putInt(type);
+		buf.putInt(component);
+		buf.putFloat(x);
+		buf.putFloat(y);
+		// angle, shear
+		buf.putFloat(0f);
+		buf.putFloat(0f);
+		buf.putFloat(radius);
+		buf.putFloat(press);
+		buf.putFloat(vx);
+		buf.putFloat(vy);
+		buf.putFloat(vp);
+		buf.putFloat(m);
+		buf.putFloat(mp);
+		end();
+	}
+	
+	/**
+	 * Bounds without velocities and accelerations.
+	 * 
+	 * @param x
+	 *            normalized center
+	 * @param width
+	 *            normalized width
+	 * @param area
+	 *            normalized area
+	 */
+	public void bnd(int session, float x, float y, float width, float height, float area) {
+		start(BND, BND_TAGS);
+		buf.putInt(session);
+		buf.putFloat(x);
+		buf.putFloat(y);
+		// angle
+		buf.putFloat(0f);
+		buf.putFloat(width);
+		buf.putFloat(height);
+		buf.putFloat(area);
+		end();
+	}
+	
+	public void alv(int[] sessions, int count) {
+		start(ALV, null);
+		// type tags "," and an "i" for every session
+		buf.put((byte) ',');
+		ints(count, 1);
+		for (int i = 0; i < count; i++)
+			buf.putInt(sessions[i]);
+		end();
+	}
+	
+	/**
+	 * Writes the remaining type tags for <code>count</code> integers after
+	 * <code>written</code> type tag characters.
+	 */
+	private void ints(int count, int written) {
+		for (int i = 0; i < count; i++)
+			buf.put((byte) 'i');
+		// null terminated and padded
+		for (int i = (count + written) & 3; i < 4; i++)
+			buf.put((byte) 0);
+	}
+	
+	private void start(byte[] address, byte[] tags) {
+		// size of the bundle element, written by end()
+		message = buf.position();
+		buf.putInt(0);
+		buf.put(address);
+		if (tags != null)
+			buf.put(tags);
+	}
+	
+	private void end() {
+		buf.putInt(message, buf.position() - message - 4);
+	}
+	
+	/**
+	 * @return the encoded bundle, from position to limit
+	 */
+	public ByteBuffer getBuffer() {
+		buf.flip();
+		return buf;
+	}
+
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.tuio;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
+
+/**
+ * Serves the TUIO stream to TCP clients (OSC packets prefixed with their
+ * length, big-endian int32) and WebSocket clients (one binary message per OSC
+ * packet), all handled by one thread with a selector.
+ * <p>
+ * The processing thread only hands over the latest frame with
+ * {@link #publish(ByteBuffer)}. A client gets the latest frame whenever it
+ * has taken the previous one completely, so frames are dropped for slow
+ * clients instead of queueing up or blocking the processing thread.
+ * <p>
+ * WebSocket connections are only accepted from this host, and browsers only
+ * from pages of this host or of the given origins, so other web sites can't
+ * read the stream.
+ */
+public class TuioServer implements Runnable {
+	
+	private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+	// largest frame header: WebSocket with 16 bit length
+	private static final int HEADER = 4;
+	
+	private final Selector selector;
+	private final ServerSocketChannel tcp, webSocket;
+	private final List<String> origins;
+	private final Thread thread = new Thread(this, "TUIO Server");
+	private volatile boolean running = false;
+	
+	// latest frame, guarded by itself
+	private final byte[] latest = new byte[TuioEncoder.CAPACITY];
+	private int latestLength = 0;
+	private long latestSeq = 0;
+	private volatile int clients = 0;
+	private volatile long dropped = 0;
+	
+	/**
+	 * @param tcpPort
+	 *            0 for no TCP clients
+	 * @param webSocketPort
+	 *            0 for no WebSocket clients (only accepted from this host)
+	 * @param origins
+	 *            origins (e.g. <code>http://example.org</code>) of web pages
+	 *            on other hosts that may connect to the WebSocket port
+	 */
+	public TuioServer(int tcpPort, int webSocketPort, List<String> origins) throws IOException {
+		this.origins = origins;
+		selector = Selector.open();
+		tcp = tcpPort > 0 ? listen(new InetSocketAddress(tcpPort)) : null;
+		webSocket = webSocketPort > 0 ? listen(new InetSocketAddress(InetAddress.getByName(null), webSocketPort)) : null;
+	}
+	
+	private ServerSocketChannel listen(InetSocketAddress address) throws IOException {
+		final ServerSocketChannel server = ServerSocketChannel.open();
+		server.socket().setReuseAddress(true);
+		server.socket().bind(address);
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+		return server;
+	}
+	
+	public void start() {
+		running = true;
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Disconnects all clients and closes the server sockets.
+	 */
+	public void stop() {
+		running = false;
+		selector.wakeup();
+		try {
+			// the ports can be reused afterwards
+			thread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Hands over a frame to all clients. Doesn't block.
+	 * 
+	 * @param frame
+	 *            encoded OSC packet, from position to limit (unchanged)
+	 */
+	public void publish(ByteBuffer frame) {
+		if (clients == 0) return;
+		synchronized (latest) {
+			final int position = frame.position();
+			latestLength = frame.remaining();
+			frame.get(latest, 0, latestLength);
+			frame.position(position);
+			latestSeq++;
+		}
+		selector.wakeup();
+	}
+	
+	/**
+	 * @return number of connected clients (WebSocket clients after the
+	 *         handshake)
+	 */
+	public int getClients() {
+		return clients;
+	}
+	
+	/**
+	 * @return number of frames that were skipped for slow clients
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+	
+	public void run() {
+		try {
+			while (running) {
+				selector.select();
+				final Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while (it.hasNext()) {
+					final SelectionKey key = it.next();
+					it.remove();
+					try {
+						if (!key.isValid())
+							continue;
+						if (key.isAcceptable())
+							accept((ServerSocketChannel) key.channel());
+						else if (key.isReadable())
+							read(key);
+					} catch (IOException e) {
+						// client is gone
+						close(key);
+					}
+				}
+				// pass on the latest frame to all clients that are ready for it
+				for (SelectionKey key : selector.keys()) {
+					if (!key.isValid() || !(key.attachment() instanceof Client))
+						continue;
+					try {
+						write(key);
+					} catch (IOException e) {
+						close(key);
+					}
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			WiimoteWhiteboard.getLogger().log(Level.WARNING, "TUIO server error.", e);
+		} finally {
+			for (SelectionKey key : selector.keys())
+				close(key);
+			try {
+				selector.close();
+			} catch (IOException e) {}
+		}
+	}
+	
+	private void accept(ServerSocketChannel server) throws IOException {
+		final SocketChannel channel = server.accept();
+		if (channel == null) return;
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		final Client client = new Client(server == webSocket);
+		channel.register(selector, SelectionKey.OP_READ, client);
+		if (!client.webSocket)
+			clients++;
+		WiimoteWhiteboard.getLogger().info(String.format("TUIO %s client %s connected.", client.webSocket ? "WebSocket" : "TCP", channel.socket().getRemoteSocketAddress()));
+	}
+	
+	private void close(SelectionKey key) {
+		final Client client = (Client) key.attachment();
+		if (client != null && (!client.webSocket || client.open))
+			clients--;
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {}
+	}
+	
+	private void read(SelectionKey key) throws IOException {
+		final Client client = (Client) key.attachment();
+		final SocketChannel channel = (SocketChannel) key.channel();
+		if (channel.read(client.in) < 0)
+			throw new IOException("closed");
+		client.in.flip();
+		if (client.webSocket) {
+			if (!client.open)
+				handshake(client);
+			// frames might have arrived right after the handshake
+			if (client.open)
+				receive(client);
+		} else {
+			// TCP clients aren't supposed to send anything
+			client.in.clear();
+		}
+		client.in.compact();
+		if (!client.in.hasRemaining())
+			throw new IOException("request too large");
+	}
+	
+	private void handshake(Client client) throws IOException {
+		final String request = new String(client.in.array(), 0, client.in.limit(), "ISO-8859-1");
+		final int end = request.indexOf("\r\n\r\n");
+		if (end < 0) return;
+		client.in.position(end + 4);
+		String key = null, origin = null;
+		for (String line : request.substring(0, end).split("\r\n")) {
+			final int colon = line.indexOf(':');
+			if (colon <= 0) continue;
+			final String name = line.substring(0, colon).trim();
+			if (name.equalsIgnoreCase("Sec-WebSocket-Key"))
+				key = line.substring(colon + 1).trim();
+			else if (name.equalsIgnoreCase("Origin"))
+				origin = line.substring(colon + 1).trim();
+		}
+		if (key == null)
+			throw new IOException("no WebSocket request");
+		// browsers always send the origin of the page, other clients don't have to
+		if (origin != null && !isAllowed(origin)) {
+			WiimoteWhiteboard.getLogger().warning(String.format("TUIO WebSocket client from %s rejected.", origin));
+			throw new IOException("origin not allowed");
+		}
+		
+		String accept;
+		try {
+			accept = base64(MessageDigest.getInstance("SHA-1").digest((key + WEBSOCKET_GUID).getBytes("ISO-8859-1")));
+		} catch (Exception e) {
+			throw new IOException(e.toString());
+		}
+		final String response = "HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\nSec-WebSocket-Accept: " + accept + "\r\n\r\n";
+		client.out.clear();
+		client.out.put(response.getBytes("ISO-8859-1"));
+		client.out.flip();
+		client.open = true;
+		clients++;
+	}
+	
+	private boolean isAllowed(String origin) {
+		for (String o : origins)
+			if (o.equalsIgnoreCase(origin))
+				return true;
+		try {
+			// no name lookup here, it would block the server thread
+			final String host = new URI(origin).getHost();
+			return host != null && (host.equalsIgnoreCase("localhost") || host.matches("127(\\.\\d{1,3}){3}") || host.equals("[::1]"));
+		} catch (Exception e) {
+			// e.g. "null" for local files or sandboxed pages
+			return false;
+		}
+	}
+	
+	/**
+	 * Reads the (masked) frames of a WebSocket client, only close frames are
+	 * of interest.
+	 */
+	private void receive(Client client) throws IOException {
+		final ByteBuffer in = client.in;
+		while (in.remaining() >= 2) {
+			final int start = in.position();
+			final int opcode = in.get(start) & 0x0F;
+			long length = in.get(start + 1) & 0x7F;
+			int header = 2;
+			if (length == 126) {
+				if (in.remaining() < 4) return;
+				length = in.getShort(start + 2) & 0xFFFF;
+				header = 4;
+			} else if (length == 127) {
+				throw new IOException("frame too large");
+			}
+			// mask
+			header += (in.get(start + 1) & 0x80) != 0 ? 4 : 0;
+			if (in.remaining() < header + length) return;
+			if (opcode == 0x8)
+				throw new IOException("closed");
+			in.position((int) (start + header + length));
+		}
+	}
+	
+	private void write(SelectionKey key) throws IOException {
+		final Client client = (Client) key.attachment();
+		if (client.webSocket && !client.open)
+			return;
+		final SocketChannel channel = (SocketChannel) key.channel();
+		if (!client.out.hasRemaining()) {
+			// previous frame is done, take the latest one
+			synchronized (latest) {
+				if (client.seq == latestSeq)
+					return;
+				if (client.seq != 0)
+					dropped += latestSeq - client.seq - 1;
+				client.seq = latestSeq;
+				client.out.clear();
+				if (client.webSocket) {
+					// unmasked binary message
+					client.out.put((byte) 0x82);
+					if (latestLength < 126) {
+						client.out.put((byte) latestLength);
+					} else {
+						client.out.put((byte) 126);
+						client.out.putShort((short) latestLength);
+					}
+				} else {
+					client.out.putInt(latestLength);
+				}
+				client.out.put(latest, 0, latestLength);
+			}
+			client.out.flip();
+		}
+		channel.write(client.out);
+		// wait till the socket can take more if the frame didn't fit
+		key.interestOps(client.out.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+	}
+	
+	private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+	
+	private static String base64(byte[] b) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < b.length; i += 3) {
+			final int n = (b[i] & 0xFF) << 16 | (i + 1 < b.length ? (b[i + 1] & 0xFF) << 8 : 0) | (i + 2 < b.length ? b[i + 2] & 0xFF : 0);
+			sb.append(BASE64[n >> 18 & 63]).append(BASE64[n >> 12 & 63]);
+			sb.append(i + 1 < b.length ? BASE64[n >> 6 & 63] : '=');
+			sb.append(i + 2 < b.length ? BASE64[n & 63] : '=');
+		}
+		return sb.toString();
+	}
+	
+	private static class Client {
+		private final boolean webSocket;
+		// WebSocket handshake done
+		private boolean open = false;
+		private final ByteBuffer in = ByteBuffer.allocate(4096);
+		// frame that is being written, including its header
+		private final ByteBuffer out = ByteBuffer.allocate(Math.max(HEADER + TuioEncoder.CAPACITY, 1024));
+		// sequence number of the latest frame taken
+		private long seq = 0;
+		
+		public Client(boolean webSocket) {
+			this.webSocket = webSocket;
+			out.flip();
+		}
+	}
+
+}
@@ -26,15 +26,20 @@
 package org.uweschmidt.wiimote.whiteboard.tuio;
 
 import java.awt.GraphicsDevice;
-import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.geom.Point2D;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
+import org.uweschmidt.wiimote.whiteboard.FrameClock;
 import org.uweschmidt.wiimote.whiteboard.WiimoteDataHandler;
 import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
 import org.uweschmidt.wiimote.whiteboard.WiimoteDataHandler.WiimoteDataListener;
@@ -43,6 +48,8 @@ import org.uweschmidt.wiimote.whiteboard.calibration.WiimoteCalibration.Calibrat
 import org.uweschmidt.wiimote.whiteboard.calibration.WiimoteCalibration.CalibrationEventListener;
 import org.uweschmidt.wiimote.whiteboard.ds.IRDot;
 import org.uweschmidt.wiimote.whiteboard.ds.Wiimote;
+import org.uweschmidt.wiimote.whiteboard.metrics.Metrics;
+import org.uweschmidt.wiimote.whiteboard.metrics.Metrics.Stage;
 import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences;
 import org.uweschmidt.wiimote.whiteboard.preferences.WWPreferences.PreferencesListener;
 
@@ -53,14 +60,43 @@ import de.sciss.net.OSCServer;
 
 public class TuioTransmitter implements PreferencesListener, WiimoteDataListener, CalibrationEventListener {
 
-	private static final OSCMessage SOURCE_PACKET = new OSCMessage("/tuio/2Dcur", new Object[] { "source", WiimoteWhiteboard.getProperty("id") });
+	private static final String SOURCE = WiimoteWhiteboard.getProperty("id");
+	private static final OSCMessage SOURCE_PACKET = new OSCMessage("/tuio/2Dcur", new Object[] { "source", SOURCE });
+	private static final byte[] SOURCE_NAME = TuioEncoder.osc(SOURCE);
+	
+	// diameter of a dot of the largest size (1), normalized (about 15 of the 1024 pixels of the camera)
+	private static final float DOT_SCALE = 15f / 1024f;
 	
 	private int fseq;
 	private int sseq;
 	private int[] sessions;
-	private Point[] last;
+	// last normalized positions, the given points are reused for subsequent frames
+	private float[] lastX, lastY;
+	private boolean[] lastVisible;
 	private float[] lastSpeed = {0f,0f,0f,0f};
+	private final int[] alive = new int[4];
+	// current cursor data, computed for every frame even if it isn't sent
+	private final float[] x = new float[4], y = new float[4], vx = new float[4], vy = new float[4], m = new float[4];
+	private final float[] press = new float[4], lastPress = new float[4], vp = new float[4], mp = new float[4];
+	// cursors with a known dot size (press is 0 otherwise)
+	private final boolean[] sized = new boolean[4];
+	// cursors that have changed since they were sent the last time
+	private final boolean[] dirty = new boolean[4];
+	private final float[] sentX = new float[4], sentY = new float[4], sentPress = new float[4];
+	// frame time in ms, MIN_VALUE if nothing was sent yet
+	private long lastRefresh = Long.MIN_VALUE;
+	private int version = WWPreferences.TUIO_VERSION;
+	private int keepAlive = WWPreferences.TUIO_KEEP_ALIVE;
+	// either the built-in encoder and channels, or NetUtil (see WWPreferences.TUIO_NETUTIL)
+	private final boolean netUtil;
+	private final TuioEncoder encoder = new TuioEncoder();
+	// UDP: the target of the preferences and the additional targets
+	private DatagramChannel[] channels = null;
 	private OSCClient trans = null;
+	// TCP and WebSocket clients
+	private final List<String> targets;
+	private final int tcpPort, webSocketPort;
+	private TuioServer server = null;
 	private int port = -1;
 	private String host = null;
 	
@@ -71,37 +107,117 @@ public class TuioTransmitter implements PreferencesListener, WiimoteDataListener
 
 	public TuioTransmitter(WiimoteDataHandler dh, WiimoteCalibration calibration) {
 		this.dh = dh;
+		this.netUtil = WWPreferences.TUIO_NETUTIL;
+		this.targets = WWPreferences.TUIO_TARGETS;
+		this.tcpPort = WWPreferences.TUIO_TCP_PORT;
+		this.webSocketPort = WWPreferences.TUIO_WEBSOCKET_PORT;
 		this.calibration = calibration;
 		calibration.addCalibrationEventListener(this);
 		prefs.addPreferencesListener(this);
 		update();
 	}
 	
+	/**
+	 * Transmitter that is independent of the preferences and the calibration
+	 * (e.g. for benchmarks).
+	 */
+	public TuioTransmitter(Rectangle bounds, String host, int port, boolean netUtil) throws IOException {
+		this(bounds, host, port, netUtil, Collections.<String>emptyList(), 0, 0);
+	}
+	
+	public TuioTransmitter(Rectangle bounds, String host, int port, boolean netUtil, List<String> targets, int tcpPort, int webSocketPort) throws IOException {
+		this.bounds = bounds;
+		this.netUtil = netUtil;
+		this.targets = targets;
+		this.tcpPort = tcpPort;
+		this.webSocketPort = webSocketPort;
+		open(host, port);
+		startServer();
+	}
+	
+	private void open(String host, int port) throws IOException {
+		close();
+		
+		fseq = 0;
+		sseq = 0;
+		sessions = new int[4];
+		lastX = new float[4];
+		lastY = new float[4];
+		lastVisible = new boolean[4];
+		lastRefresh = Long.MIN_VALUE;
+		this.port = port;
+		this.host = host;
+
+		if (netUtil) {
+			trans = OSCClient.newUsing(OSCServer.UDP);
+			trans.setTarget(new InetSocketAddress(host, port));
+			trans.start();
+			if (!targets.isEmpty() || tcpPort > 0 || webSocketPort > 0)
+				WiimoteWhiteboard.getLogger().warning("Additional TUIO targets and clients are not supported with NetUtil.");
+			if (version != 1)
+				WiimoteWhiteboard.getLogger().warning("TUIO 2.0 is not supported with NetUtil, sending TUIO 1.1.");
+		} else {
+			final List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+			addresses.add(new InetSocketAddress(host, port));
+			for (String target : targets) {
+				try {
+					final int colon = target.lastIndexOf(':');
+					addresses.add(new InetSocketAddress(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1))));
+				} catch (Exception e) {
+					WiimoteWhiteboard.getLogger().warning("Invalid TUIO target: " + target);
+				}
+			}
+			final DatagramChannel[] channels = new DatagramChannel[addresses.size()];
+			for (int i = 0; i < channels.length; i++) {
+				channels[i] = DatagramChannel.open();
+				// the processing thread never waits for the network
+				channels[i].configureBlocking(false);
+				channels[i].connect(addresses.get(i));
+			}
+			this.channels = channels;
+		}
+	}
+	
+	private void startServer() throws IOException {
+		if (server == null && !netUtil && (tcpPort > 0 || webSocketPort > 0)) {
+			server = new TuioServer(tcpPort, webSocketPort, WWPreferences.TUIO_WEBSOCKET_ORIGINS);
+			server.start();
+		}
+	}
+	
+	private void close() throws IOException {
+		if (trans != null)
+			trans.stop();
+		trans = null;
+		if (channels != null)
+			for (DatagramChannel channel : channels)
+				channel.close();
+		channels = null;
+	}
+	
+	/**
+	 * Stops the transmission and disconnects all TCP and WebSocket clients.
+	 */
+	public void dispose() throws IOException {
+		close();
+		if (server != null)
+			server.stop();
+		server = null;
+	}
+	
 	private void update() {
 		try {
 			if (prefs.isTuioEnabled()) {
-				if (trans == null || prefs.getTuioPort() != port || !prefs.getTuioHost().equals(host)) {
-					if (trans != null)
-						trans.stop();
-					
-					fseq = 0;
-					sseq = 0;
-					sessions = new int[4];
-					last = new Point[4];
-					port = prefs.getTuioPort();
-					host = prefs.getTuioHost();
+				if ((trans == null && channels == null) || prefs.getTuioPort() != port || !prefs.getTuioHost().equals(host)) {
 					getScreenSize();
-
-					trans = OSCClient.newUsing(OSCServer.UDP);
-					trans.setTarget(new InetSocketAddress(host, port));
-					trans.start();
+					// stream clients stay connected when the UDP target changes
+					open(prefs.getTuioHost(), prefs.getTuioPort());
 					dh.addWiimoteDataListener(this);
+					startServer();
 				}
 			} else {
 				dh.removeWiimoteDataListener(this);
-				if (trans != null)
-					trans.stop();
-				trans = null;
+				dispose();
 			}
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -128,72 +244,186 @@ public class TuioTransmitter implements PreferencesListener, WiimoteDataListener
 	// implementation rationale:
 	// - http://www.tuio.org/specs.html
 	// - http://www.adrienm.net/emotion/forum/viewtopic.php?f=3&t=20&st=0&sk=t&sd=a&start=10
-	public void irWarped(Map<Wiimote, IRDot[]> data, Point[] points) {
-		if (trans == null) return;
+	public void irWarped(Map<Wiimote, IRDot[]> data, Point2D[] points) {
+		if (trans == null && channels == null) return;
+		final long begin = System.nanoTime();
+		send(points, dh != null ? dh.getSizes() : null, dh != null ? dh.getTrackIds() : null);
+		Metrics.record(Stage.TUIO, begin);
+	}
+	
+	/**
+	 * @param sizes
+	 *            dot sizes (0..1, negative if unknown) of the points, or null
+	 *            if not available
+	 * @param tracks
+	 *            track ids of the points (used as session ids), or null if
+	 *            not available
+	 */
+	private void send(Point2D[] points, double[] sizes, long[] tracks) {
+		// the monotonic frame time, so keep-alives follow the frames (and replays)
+		final long now = FrameClock.frameMillis();
+		// everything is sent every frame without keep-alive interval
+		final boolean refresh = keepAlive == 0 || lastRefresh == Long.MIN_VALUE || now - lastRefresh >= keepAlive;
+		boolean visible = false, changed = false;
+		int count = 0;
+		for (int i = 0; i < 4; i++) {
+			Point2D p = points[i];
+			visible = visible || p != null || lastVisible[i];
+			if (p != null) {
+				// a new pen might take the place of another one in the same frame
+				final boolean known = lastVisible[i] && (tracks == null || sessions[i] == (int) tracks[i]);
+				if (!known)
+					sessions[i] = tracks != null ? (int) tracks[i] : ++sseq;
+				alive[count++] = sessions[i];
+				float px = (float)(Math.max(0, Math.min(p.getX() - bounds.x, bounds.width)) / bounds.width);
+				float py = (float)(Math.max(0, Math.min(p.getY() - bounds.y, bounds.height)) / bounds.height);
+				sized[i] = sizes != null && sizes[i] >= 0;
+				float pp = sized[i] ? (float) Math.min(1, sizes[i]) : 0f;
+				// last position, or p itself if not available
+				float lx = known ? lastX[i] : px;
+				float ly = known ? lastY[i] : py;
+				float lp = known ? lastPress[i] : pp;
+				float speed = (float)Math.sqrt(Math.pow(px - lx, 2) + Math.pow(py - ly, 2));
+				x[i] = px;
+				y[i] = py;
+				// X, Y: normalized motion speed (dt = 1)
+				vx[i] = px - lx;
+				vy[i] = py - ly;
+				// m: normalized motion acceleration (dt = 1)
+				m[i] = known ? speed - lastSpeed[i] : 0f;
+				press[i] = pp;
+				// pressure speed and acceleration
+				mp[i] = known ? pp - lp - vp[i] : 0f;
+				vp[i] = pp - lp;
+				// moves of less than half a pixel don't count as changes
+				dirty[i] = !known || Math.abs(px - sentX[i]) * bounds.width >= .5f || Math.abs(py - sentY[i]) * bounds.height >= .5f || pp != sentPress[i];
+				lastSpeed[i] = speed;
+				lastX[i] = px;
+				lastY[i] = py;
+				lastPress[i] = pp;
+			} else {
+				dirty[i] = false;
+				lastSpeed[i] = 0f;
+			}
+			changed = changed || dirty[i] || (p == null && lastVisible[i]);
+			lastVisible[i] = p != null;
+		}
 		
-		// return if all lights are off now and were previously
-		if ((points[0] == null && points[1] == null && points[2] == null && points[3] == null) &&
-			(last[0] == null && last[1] == null && last[2] == null && last[3] == null))
+		// return if all lights are off now and were previously,
+		// or if nothing has changed and the next refresh isn't due yet
+		if (keepAlive == 0 ? !visible : !refresh && !changed)
 			return;
+		if (refresh)
+			lastRefresh = now;
 		
-		OSCBundle b = new OSCBundle();
-		
-		// (1) source name
-		b.addPacket(SOURCE_PACKET);
-
-		// (2) alive sessions
-		List<Object> alive = new ArrayList<Object>();
-		alive.add("alive");
+		// remember what the receivers know
 		for (int i = 0; i < 4; i++) {
-			if (points[i] != null) {
-				if (last[i] == null)
-					sessions[i] = ++sseq;
-				alive.add(sessions[i]);
+			if (lastVisible[i] && (refresh || dirty[i])) {
+				sentX[i] = x[i];
+				sentY[i] = y[i];
+				sentPress[i] = press[i];
 			}
 		}
-		b.addPacket(new OSCMessage("/tuio/2Dcur", alive.toArray()));
-
-		// (3) cursor data
+		
+		if (channels == null) {
+			sendNetUtil(refresh, count);
+			return;
+		}
+		if (version == 2)
+			encode2(refresh, count);
+		else
+			encode(refresh, count);
+		
+		// the frame is encoded once for all receivers
+		final ByteBuffer frame = encoder.getBuffer();
+		for (DatagramChannel channel : channels) {
+			frame.position(0);
+			try {
+				// nothing is sent if the socket buffer is full, the next frame supersedes this one anyway
+				channel.write(frame);
+			} catch (PortUnreachableException e) {
+				// nobody is listening (yet)
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		if (server != null) {
+			frame.position(0);
+			server.publish(frame);
+		}
+	}
+	
+	// TUIO 1.1 with NetUtil
+	private void sendNetUtil(boolean refresh, int count) {
+		final OSCBundle b = new OSCBundle();
+		b.addPacket(SOURCE_PACKET);
+		final Object[] args = new Object[count + 1];
+		args[0] = "alive";
+		for (int i = 0; i < count; i++)
+			args[i + 1] = alive[i];
+		b.addPacket(new OSCMessage("/tuio/2Dcur", args));
 		for (int i = 0; i < 4; i++) {
-			Point p = points[i];
-			Point l = last[i] != null ? last[i] : p;
-			if (p != null) {
-				p.translate(-bounds.x, -bounds.y);
-				// "l" is the last point and already translated, or p itself if not available
-				float px = (float)Math.max(0, Math.min(p.x, bounds.width)) / bounds.width;
-				float py = (float)Math.max(0, Math.min(p.y, bounds.height)) / bounds.height;
-				float lx = (float)Math.max(0, Math.min(l.x, bounds.width)) / bounds.width;
-				float ly = (float)Math.max(0, Math.min(l.y, bounds.height)) / bounds.height;
-				float speed = (float)Math.sqrt(Math.pow(px - lx, 2) + Math.pow(py - ly, 2));
+			if (lastVisible[i] && (refresh || dirty[i])) {
 				b.addPacket(new OSCMessage("/tuio/2Dcur", new Object[] {
-						"set",
-						// s: session id
-						sessions[i],
-						// x, y: normalized position, range 0..1
-						px, py,
-						// X, Y: normalized motion speed (dt = 1)
-						px - lx, py - ly,
-						// m: normalized motion acceleration (dt = 1)
-						speed - lastSpeed[i]
+						"set", sessions[i], x[i], y[i], vx[i], vy[i], m[i]
 				}));
-				lastSpeed[i] = speed;
-			} else {
-				lastSpeed[i] = 0f;
 			}
-			last[i] = p;
 		}
-		
-		// (4) frame sequence number
 		b.addPacket(new OSCMessage("/tuio/2Dcur", new Object[] { "fseq", fseq++ }));
-		
 		try {
 //			OSCPacket.printTextOn(System.out, b);
 			trans.send(b);
+		} catch (PortUnreachableException e) {
+			// nobody is listening (yet)
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 	
+	// TUIO 1.1: source, alive, set (s, x, y, X, Y, m) for each cursor and fseq
+	private void encode(boolean refresh, int count) {
+		encoder.begin();
+		encoder.source(SOURCE_NAME);
+		encoder.alive(alive, count);
+		for (int i = 0; i < 4; i++)
+			if (lastVisible[i] && (refresh || dirty[i]))
+				encoder.set(sessions[i], x[i], y[i], vx[i], vy[i], m[i]);
+		encoder.fseq(fseq++);
+	}
+	
+	// TUIO 2.0: frm, ptr and bnd for each cursor (with the dot size, if known) and alv
+	private void encode2(boolean refresh, int count) {
+		encoder.begin();
+		// receivers expect an absolute time stamp
+		encoder.frm(fseq++, System.currentTimeMillis(), bounds.width, bounds.height, SOURCE_NAME);
+		for (int i = 0; i < 4; i++) {
+			if (lastVisible[i] && (refresh || dirty[i])) {
+				final float d = press[i] * DOT_SCALE;
+				// type id 0 (default), user id 0, component id is the cursor
+				encoder.ptr(sessions[i], 0, i, x[i], y[i], d / 2, press[i], vx[i], vy[i], vp[i], m[i], mp[i]);
+				// the bounds are optional, better none than made-up ones
+				if (sized[i])
+					encoder.bnd(sessions[i], x[i], y[i], d, d, (float) (Math.PI / 4) * d * d);
+			}
+		}
+		encoder.alv(alive, count);
+	}
+	
+	/**
+	 * TUIO version 1 (1.1) or 2 (2.0), see {@link WWPreferences#TUIO_VERSION}.
+	 */
+	public void setVersion(int version) {
+		this.version = version;
+	}
+	
+	/**
+	 * @param keepAlive
+	 *            see {@link WWPreferences#TUIO_KEEP_ALIVE}
+	 */
+	public void setKeepAlive(int keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+	
 	public void batteryLevel(Wiimote wiimote, double level) {
 	}
 	
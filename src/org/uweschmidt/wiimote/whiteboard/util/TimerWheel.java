@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2008-2009, Uwe Schmidt
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following conditions: 
+ * 
+ * The above copyright notice and this permission notice shall be included in 
+ * all copies or substantial portions of the Software. 
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL 
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER 
+ * DEALINGS IN THE SOFTWARE. 
+ * 
+ * The Software uses a third-party library (WiiRemoteJ) which is not part of
+ * the Software and is subject to its own license.
+ */
+
+package org.uweschmidt.wiimote.whiteboard.util;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+import org.uweschmidt.wiimote.whiteboard.FrameClock;
+import org.uweschmidt.wiimote.whiteboard.WiimoteWhiteboard;
+
+/**
+ * Hashed timer wheel with a resolution of one millisecond of the
+ * {@link FrameClock}, driven by a single daemon thread. Scheduling and
+ * cancelling never block: new timeouts are handed over to the timer thread,
+ * which is the only one touching the wheel, and sleeps until the next
+ * deadline. A {@link Timeout} can be scheduled again and again, so
+ * rescheduling doesn't allocate any memory.
+ * <p>
+ * Tasks are run by the timer thread while holding the given lock, so they can
+ * safely share state with code that holds the same lock.
+ */
+public class TimerWheel implements Runnable {
+	
+	private static final int PENDING = 0, CANCELLED = 1, EXPIRED = 2, IDLE = 3;
+	private static final long TICK = 1000000L;
+	
+	/**
+	 * Run of a task, to be scheduled on a single wheel only. Once scheduled, it
+	 * may only be rescheduled by threads holding the lock of the wheel (e.g. by
+	 * its own task).
+	 */
+	public static final class Timeout {
+		private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+		private static final AtomicIntegerFieldUpdater<Timeout> QUEUED = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "queued");
+		
+		private final Runnable task;
+		// in ticks
+		private volatile long deadline;
+		private volatile int state = IDLE;
+		// 1 while it's handed over to the timer thread
+		private volatile int queued = 0;
+		private Timeout nextAdded;
+		
+		/*
+		 * timer thread only
+		 */
+		// next timeout in the same bucket
+		private Timeout next;
+		// -1 if not in the wheel
+		private int bucket = -1;
+		
+		public Timeout(Runnable task) {
+			this.task = task;
+		}
+		
+		/**
+		 * @return true if the task won't be run, false if it has already been
+		 *         run (or cancelled)
+		 */
+		public boolean cancel() {
+			return STATE.compareAndSet(this, PENDING, CANCELLED);
+		}
+		
+		public boolean isPending() {
+			return state == PENDING;
+		}
+	}
+	
+	private final Object lock;
+	private final long start = FrameClock.now();
+	// timeouts handed over to the timer thread, linked by nextAdded
+	private final AtomicReference<Timeout> added = new AtomicReference<Timeout>();
+	private final Thread thread;
+	// tick the timer thread wakes up at, 0 while it's awake
+	private volatile long wakeup = 0;
+	
+	/*
+	 * timer thread only
+	 */
+	private final Timeout[] wheel;
+	private final int mask;
+	private int count = 0;
+	// next tick to expire
+	private long tick = 0;
+	
+	/**
+	 * @param lock
+	 *            held while running tasks
+	 * @param buckets
+	 *            number of buckets (milliseconds per round), rounded up to a
+	 *            power of two
+	 */
+	public TimerWheel(String name, Object lock, int buckets) {
+		this.lock = lock;
+		wheel = new Timeout[Integer.highestOneBit(Math.max(2, buckets) * 2 - 1)];
+		mask = wheel.length - 1;
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	private long now() {
+		return FrameClock.now() - start;
+	}
+	
+	/**
+	 * Called (holding the lock) before the tasks that are due at the same
+	 * tick.
+	 */
+	protected void beforeTasks() {
+	}
+	
+	/**
+	 * Called (holding the lock) after the tasks that were due at the same
+	 * tick.
+	 */
+	protected void afterTasks() {
+	}
+	
+	/**
+	 * Runs the given task after the given delay (at the earliest).
+	 */
+	public Timeout schedule(Runnable task, long delayMillis) {
+		return schedule(new Timeout(task), delayMillis);
+	}
+	
+	/**
+	 * Runs the task of the given timeout after the given delay (at the
+	 * earliest) instead of any time it's pending for.
+	 */
+	public Timeout schedule(Timeout t, long delayMillis) {
+		// round up to the next tick
+		t.deadline = (now() + Math.max(0, delayMillis) * TICK + TICK - 1) / TICK;
+		t.state = PENDING;
+		if (Timeout.QUEUED.compareAndSet(t, 0, 1)) {
+			Timeout head;
+			do {
+				head = added.get();
+				t.nextAdded = head;
+			} while (!added.compareAndSet(head, t));
+		}
+		if (t.deadline < wakeup)
+			LockSupport.unpark(thread);
+		return t;
+	}
+	
+	public void run() {
+		while (true) {
+			final long now = now() / TICK;
+			// nothing happened since the wheel ran empty, skip the idle ticks
+			if (count == 0)
+				tick = now;
+			
+			Timeout t = added.getAndSet(null);
+			while (t != null) {
+				final Timeout nextAdded = t.nextAdded;
+				t.nextAdded = null;
+				// from now on, rescheduling hands it over again
+				t.queued = 0;
+				if (t.bucket >= 0)
+					unlink(t);
+				if (t.isPending()) {
+					// already due, expire with the current tick
+					link(t, (int) Math.max(t.deadline, tick) & mask);
+				}
+				t = nextAdded;
+			}
+			
+			for (; tick <= now; tick++)
+				expire();
+			
+			final long next = count == 0 ? Long.MAX_VALUE : next();
+			wakeup = next;
+			// timeouts added in the meantime might be due earlier
+			if (added.get() == null) {
+				if (next == Long.MAX_VALUE)
+					LockSupport.park(this);
+				else
+					FrameClock.get().park(this, start + next * TICK);
+			}
+			wakeup = 0;
+		}
+	}
+	
+	private void link(Timeout t, int b) {
+		t.next = wheel[b];
+		wheel[b] = t;
+		t.bucket = b;
+		count++;
+	}
+	
+	private void unlink(Timeout t) {
+		final int b = t.bucket;
+		if (wheel[b] == t) {
+			wheel[b] = t.next;
+		} else {
+			Timeout prev = wheel[b];
+			while (prev.next != t)
+				prev = prev.next;
+			prev.next = t.next;
+		}
+		t.next = null;
+		t.bucket = -1;
+		count--;
+	}
+	
+	// expires all timeouts of the current tick
+	private void expire() {
+		final int b = (int) tick & mask;
+		Timeout prev = null, t = wheel[b], due = null;
+		while (t != null) {
+			final Timeout next = t.next;
+			if (t.deadline <= tick || !t.isPending()) {
+				if (prev == null) wheel[b] = next; else prev.next = next;
+				t.bucket = -1;
+				count--;
+				t.next = due;
+				due = t;
+			} else {
+				// later round
+				prev = t;
+			}
+			t = next;
+		}
+		if (due == null) return;
+		
+		synchronized (lock) {
+			beforeTasks();
+			while (due != null) {
+				t = due;
+				due = t.next;
+				t.next = null;
+				// unless it has been rescheduled for later in the meantime
+				if (t.deadline <= tick && Timeout.STATE.compareAndSet(t, PENDING, EXPIRED)) {
+					try {
+						t.task.run();
+					} catch (RuntimeException e) {
+						WiimoteWhiteboard.getLogger().log(Level.WARNING, "Error in timer task", e);
+					}
+				}
+			}
+			afterTasks();
+		}
+	}
+	
+	// tick of the next deadline, at most one round ahead
+	private long next() {
+		for (long k = tick; k < tick + wheel.length; k++) {
+			for (Timeout t = wheel[(int) k & mask]; t != null; t = t.next) {
+				if (t.deadline <= k)
+					return k;
+			}
+		}
+		return tick + wheel.length;
+	}
+
+}